@@ -0,0 +1,37 @@
+// Compares cold calls, which create and tear down an isolate around each query as the demo
+// used to, with warm calls on one reused isolate.
+//
+//   node bench.js [iterations]
+
+const { createIsolate, tearDownIsolate, formatSql } = require('./index')
+
+const iterations = parseInt(process.argv[2] || '200', 10)
+const sql = 'SELECT a, b, COUNT(*) FROM orders o JOIN customers c ON c.id = o.customer_id '
+  + 'WHERE o.created_at > $1 AND c.country IN (\'JP\', \'US\') GROUP BY a, b ORDER BY 3 DESC'
+const options = { dialect: 'postgresql' }
+
+function measure(name, call) {
+  for (let i = 0; i < Math.min(iterations, 20); i++) {
+    call()
+  }
+  const times = []
+  for (let i = 0; i < iterations; i++) {
+    const start = process.hrtime.bigint()
+    call()
+    times.push(Number(process.hrtime.bigint() - start) / 1000)
+  }
+  times.sort((a, b) => a - b)
+  const percentile = p => times[Math.min(times.length - 1, Math.floor(times.length * p))].toFixed(1)
+  console.log(`${name}: p50 ${percentile(0.5)} us, p99 ${percentile(0.99)} us, `
+    + `max ${times[times.length - 1].toFixed(1)} us`)
+}
+
+measure('cold (isolate per call)', () => {
+  const thread = createIsolate()
+  formatSql(thread, sql, options)
+  tearDownIsolate(thread)
+})
+
+const thread = createIsolate()
+measure('warm (reused isolate)', () => formatSql(thread, sql, options))
+tearDownIsolate(thread)
@@ -3,54 +3,142 @@ const ffi = require('ffi-napi');
 
 const version = '2.0.0'
 
+const voidPtr = ref.refType(ref.types.void)
+const charPtr = ref.refType(ref.types.char)
+
 const libJava = ffi.Library(__dirname + '/sqlformatterdemo', {
   graal_create_isolate: [
     ref.types.int, [
-      ref.refType(ref.types.void),
-      ref.refType(ref.types.void),
-      ref.refType(ref.refType(ref.types.void))
+      voidPtr,
+      voidPtr,
+      ref.refType(voidPtr)
     ]],
   graal_tear_down_isolate: [
     ref.types.int, [
-      ref.refType(ref.types.void)]
+      voidPtr]
   ],
   hello: [
     ref.types.CString,
-    [ref.refType(ref.types.void)]],
-  format_sql: [
-    ref.types.CString, [
-      ref.refType(ref.types.void),
-      ref.refType(ref.types.CString)
+    [voidPtr]],
+  sql_format: [
+    ref.types.int, [
+      voidPtr,
+      charPtr,
+      ref.types.size_t,
+      ref.types.CString,
+      ref.types.CString,
+      ref.types.int,
+      ref.types.int,
+      ref.types.int,
+      ref.refType(charPtr),
+      ref.refType(ref.types.size_t)
+    ]],
+  sql_format_free: [
+    ref.types.void, [
+      voidPtr,
+      charPtr
     ]],
 })
 
+// Flags of sql_format
+const UPPERCASE = 1
+const MINIFY = 2
+const STRIP_COMMENTS = 4
+
 /**
- * HTTP Cloud Function.
+ * Creates an isolate, returning its thread.
+ */
+function createIsolate() {
+  const p_graal_isolatethread_t = ref.alloc(voidPtr)
+  const rc = libJava.graal_create_isolate(ref.NULL, ref.NULL, p_graal_isolatethread_t)
+  if (rc !== 0) {
+    throw new Error(`error on isolate creation or attach: ${rc}`)
+  }
+  return ref.deref(p_graal_isolatethread_t)
+}
+
+function tearDownIsolate(thread) {
+  libJava.graal_tear_down_isolate(thread)
+}
+
+/**
+ * Formats a query on the given isolate thread.
+ *
+ * @param {Buffer} thread Isolate thread returned by createIsolate.
+ * @param {Buffer|string} sql Query.
+ * @param {Object} options dialect, indent, uppercase, minify, stripComments,
+ *     linesBetweenQueries and maxColumnLength, all optional.
+ * @returns {string} Formatted query.
+ */
+function formatSql(thread, sql, options = {}) {
+  const input = Buffer.isBuffer(sql) ? sql : Buffer.from(sql, 'utf8')
+  const result = ref.alloc(charPtr)
+  const resultLength = ref.alloc(ref.types.size_t)
+  const flags = (options.uppercase ? UPPERCASE : 0)
+    | (options.minify ? MINIFY : 0)
+    | (options.stripComments ? STRIP_COMMENTS : 0)
+  const rc = libJava.sql_format(
+    thread,
+    input,
+    input.length,
+    options.dialect || null,
+    options.indent || null,
+    flags,
+    options.linesBetweenQueries === undefined ? -1 : options.linesBetweenQueries,
+    options.maxColumnLength === undefined ? -1 : options.maxColumnLength,
+    result,
+    resultLength)
+  const buffer = ref.deref(result)
+  if (ref.isNull(buffer)) {
+    throw new Error('out of memory')
+  }
+  const text = ref.reinterpret(buffer, ref.deref(resultLength), 0).toString('utf8')
+  libJava.sql_format_free(thread, buffer)
+  if (rc !== 0) {
+    throw new Error(text)
+  }
+  return text
+}
+
+// One isolate for this worker, reused by every request
+const thread = createIsolate()
+process.on('exit', () => tearDownIsolate(thread))
+
+function integer(value) {
+  return value === undefined ? undefined : parseInt(value, 10)
+}
+
+/**
+ * HTTP Cloud Function. The query is the body of a POST request, and the dialect and
+ * options are query parameters, e.g. ?dialect=postgresql&uppercase=true.
  *
  * @param {Object} req Cloud Function request context.
  * @param {Object} res Cloud Function response context.
  */
 exports.handler = (req, res) => {
-  const p_graal_isolatethread_t = ref.alloc(ref.refType(ref.types.void))
-
-  const rc = libJava.graal_create_isolate(ref.NULL, ref.NULL, p_graal_isolatethread_t)
-  if (rc !== 0) {
-    res.header('Access-Control-Allow-Origin', "*");
-    res.header('Access-Control-Allow-Headers', "Origin, X-Requested-With, Content-Type, Accept");
-    res.send('error on isolate creation or attach')
-    return;
-  }
+  res.header('Access-Control-Allow-Origin', "*");
+  res.header('Access-Control-Allow-Headers', "Origin, X-Requested-With, Content-Type, Accept");
   if (req.method !== 'POST') {
-    const hello = libJava.hello(ref.deref(p_graal_isolatethread_t))
-    res.header('Access-Control-Allow-Origin', "*");
-    res.header('Access-Control-Allow-Headers', "Origin, X-Requested-With, Content-Type, Accept");
+    const hello = libJava.hello(thread)
     res.send(`${hello} ${version}`);
-  } else {
-    const formatted = libJava.format_sql(ref.deref(p_graal_isolatethread_t), ref.allocCString(req.rawBody.toString()))
-    res.header('Access-Control-Allow-Origin', "*");
-    res.header('Access-Control-Allow-Headers', "Origin, X-Requested-With, Content-Type, Accept");
-    res.send(formatted);
+    return;
+  }
+  const query = req.query || {}
+  try {
+    res.send(formatSql(thread, req.rawBody, {
+      dialect: query.dialect,
+      indent: query.indent,
+      uppercase: query.uppercase === 'true',
+      minify: query.minify === 'true',
+      stripComments: query.stripComments === 'true',
+      linesBetweenQueries: integer(query.linesBetweenQueries),
+      maxColumnLength: integer(query.maxColumnLength),
+    }));
+  } catch (e) {
+    res.status(400).send(e.message);
   }
-
-  libJava.graal_tear_down_isolate(ref.deref(p_graal_isolatethread_t));
 };
+
+exports.createIsolate = createIsolate
+exports.tearDownIsolate = tearDownIsolate
+exports.formatSql = formatSql
@@ -1,20 +1,203 @@
 package com.github.vertical_blank.sqlformatter;
 
+import com.github.vertical_blank.sqlformatter.core.FormatConfig;
+import com.github.vertical_blank.sqlformatter.languages.Dialect;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
 import org.graalvm.nativeimage.IsolateThread;
+import org.graalvm.nativeimage.UnmanagedMemory;
+import org.graalvm.nativeimage.c.CGlobalData;
+import org.graalvm.nativeimage.c.CGlobalDataFactory;
 import org.graalvm.nativeimage.c.function.CEntryPoint;
-import org.graalvm.nativeimage.c.type.CTypeConversion;
 import org.graalvm.nativeimage.c.type.CCharPointer;
+import org.graalvm.nativeimage.c.type.CCharPointerPointer;
+import org.graalvm.nativeimage.c.type.CTypeConversion;
+import org.graalvm.nativeimage.c.type.WordPointer;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
 
+/**
+ * Entry points of the shared library.
+ *
+ * <p>Creating an isolate costs far more than formatting a query, so a caller creates one isolate
+ * per worker with graal_create_isolate when the worker starts, passes its thread to every call, and
+ * tears it down when the worker stops. Formatters are built by the first call with each dialect and
+ * reused by later calls in the same isolate.
+ *
+ * <pre>
+ * int sql_format(graal_isolatethread_t *thread, char *sql, size_t sql_length,
+ *                char *dialect, char *indent, int flags,
+ *                int lines_between_queries, int max_column_length,
+ *                char **result, size_t *result_length);
+ * void sql_format_free(graal_isolatethread_t *thread, char *result);
+ * </pre>
+ */
 public final class SqlFormatterDemo {
 
+    /** Flag of sql_format: uppercases reserved words. */
+    public static final int UPPERCASE = 1;
+    /** Flag of sql_format: removes whitespace that is not needed instead of formatting. */
+    public static final int MINIFY = 2;
+    /** Flag of sql_format: removes comments when minifying. */
+    public static final int STRIP_COMMENTS = 4;
+
+    /** Result of sql_format: the query was formatted. */
+    public static final int OK = 0;
+    /** Result of sql_format: the dialect is not known, and the result is an error message. */
+    public static final int UNKNOWN_DIALECT = 1;
+    /** Result of sql_format: formatting failed, and the result is an error message. */
+    public static final int FAILED = 2;
+    /** Result of sql_format: no memory was left for the result, which is set to NULL. */
+    public static final int NO_MEMORY = 3;
+
+    private static final CGlobalData<CCharPointer> HELLO =
+            CGlobalDataFactory.createCString("hello from native lib");
+
+    private SqlFormatterDemo() {}
+
+    /** Returns a greeting in static memory, which is not freed. */
     @CEntryPoint(name = "hello")
     static CCharPointer hello(IsolateThread thread) {
-        return CTypeConversion.toCString("hello from native lib").get();
+        return HELLO.get();
     }
 
-    @CEntryPoint(name = "format_sql")
-    static CCharPointer formatSql(IsolateThread thread, CCharPointer sql) {
-        return CTypeConversion.toCString(SqlFormatter.format(CTypeConversion.toJavaString(sql))).get();
+    /**
+     * Formats a query. The result is NUL-terminated UTF-8 in a buffer allocated with malloc, which
+     * the caller frees with sql_format_free, also when it is an error message.
+     *
+     * @param thread thread of the calling worker's isolate
+     * @param sql query in UTF-8
+     * @param sqlLength length of the query in bytes
+     * @param dialect name or alias of the dialect as taken by Dialect.nameOf, or NULL for StandardSql
+     * @param indent indentation, or NULL for two spaces
+     * @param flags UPPERCASE, MINIFY and STRIP_COMMENTS
+     * @param linesBetweenQueries lines between queries, or a negative number for the default
+     * @param maxColumnLength maximum length of an inline block, or a negative number for the default
+     * @param result set to the formatted query or an error message
+     * @param resultLength set to the length of the result in bytes, not counting the NUL
+     * @return OK, UNKNOWN_DIALECT, FAILED or NO_MEMORY
+     */
+    @CEntryPoint(name = "sql_format")
+    static int format(
+            IsolateThread thread,
+            CCharPointer sql,
+            UnsignedWord sqlLength,
+            CCharPointer dialect,
+            CCharPointer indent,
+            int flags,
+            int linesBetweenQueries,
+            int maxColumnLength,
+            CCharPointerPointer result,
+            WordPointer resultLength) {
+        try {
+            Optional<Dialect> named = dialect.isNull()
+                    ? Optional.of(Dialect.StandardSql)
+                    : Dialect.nameOf(CTypeConversion.toJavaString(dialect));
+            if (!named.isPresent()) {
+                String message = "Unknown dialect: " + CTypeConversion.toJavaString(dialect);
+                return write(message, result, resultLength) ? UNKNOWN_DIALECT : NO_MEMORY;
+            }
+            if (sqlLength.aboveThan(Integer.MAX_VALUE)) {
+                return write("Query is too long", result, resultLength) ? FAILED : NO_MEMORY;
+            }
+            FormatConfig.FormatConfigBuilder cfg = FormatConfig.builder()
+                    .uppercase((flags & UPPERCASE) != 0)
+                    .minify((flags & MINIFY) != 0)
+                    .stripComments((flags & STRIP_COMMENTS) != 0);
+            if (indent.isNonNull()) {
+                cfg.indent(CTypeConversion.toJavaString(indent));
+            }
+            if (linesBetweenQueries >= 0) {
+                cfg.linesBetweenQueries(linesBetweenQueries);
+            }
+            if (maxColumnLength >= 0) {
+                cfg.maxColumnLength(maxColumnLength);
+            }
+            // Decoded straight from the caller's memory, without a byte[] copy of it
+            CharBuffer query = StandardCharsets.UTF_8.decode(
+                    CTypeConversion.asByteBuffer(sql, (int) sqlLength.rawValue()));
+            return format(SqlFormatter.of(named.get()), query, cfg.build(), result, resultLength)
+                    ? OK
+                    : NO_MEMORY;
+        } catch (Throwable e) {
+            String message = e.getMessage() == null ? e.toString() : e.getMessage();
+            return write(message, result, resultLength) ? FAILED : NO_MEMORY;
+        }
     }
 
-}
\ No newline at end of file
+    /**
+     * Frees a result of sql_format.
+     *
+     * @param thread thread of the calling worker's isolate
+     * @param buffer result, or NULL
+     */
+    @CEntryPoint(name = "sql_format_free")
+    static void free(IsolateThread thread, CCharPointer buffer) {
+        if (buffer.isNonNull()) {
+            UnmanagedMemory.free(buffer);
+        }
+    }
+
+    // Encodes the output straight into unmanaged memory, in a larger buffer when it does not fit
+    private static boolean format(
+            SqlFormatter.Formatter formatter,
+            CharBuffer query,
+            FormatConfig cfg,
+            CCharPointerPointer result,
+            WordPointer resultLength) {
+        int capacity = (int) Math.min(Integer.MAX_VALUE, 2L * query.length() + 64);
+        while (true) {
+            CCharPointer buffer = malloc(capacity);
+            if (buffer.isNull()) {
+                result.write(WordFactory.nullPointer());
+                return false;
+            }
+            // One byte is kept for the NUL
+            ByteBuffer out = CTypeConversion.asByteBuffer(buffer, capacity - 1);
+            try {
+                formatter.format(query, out, cfg);
+            } catch (BufferOverflowException e) {
+                UnmanagedMemory.free(buffer);
+                if (capacity == Integer.MAX_VALUE) {
+                    throw e;
+                }
+                capacity = (int) Math.min(Integer.MAX_VALUE, 2L * capacity);
+                continue;
+            } catch (Throwable e) {
+                UnmanagedMemory.free(buffer);
+                throw e;
+            }
+            buffer.write(out.position(), (byte) 0);
+            result.write(buffer);
+            resultLength.write(WordFactory.unsigned(out.position()));
+            return true;
+        }
+    }
+
+    // Sets the result to a message, or to NULL when no memory is left for it
+    private static boolean write(
+            String message, CCharPointerPointer result, WordPointer resultLength) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        CCharPointer buffer = malloc(bytes.length + 1);
+        if (buffer.isNull()) {
+            result.write(WordFactory.nullPointer());
+            return false;
+        }
+        CTypeConversion.asByteBuffer(buffer, bytes.length).put(bytes);
+        buffer.write(bytes.length, (byte) 0);
+        result.write(buffer);
+        resultLength.write(WordFactory.unsigned(bytes.length));
+        return true;
+    }
+
+    private static CCharPointer malloc(int size) {
+        try {
+            return UnmanagedMemory.malloc(size);
+        } catch (OutOfMemoryError e) {
+            return WordFactory.nullPointer();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.vertical_blank.sqlformatter.cli;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class MainTest {
+  private static final String QUERY = "select a from t";
+  private static final String FORMATTED = "select\n  a\nfrom\n  t\n";
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+  @Test
+  public void formatsFilesInPlace() throws IOException {
+    Path dir = Files.createTempDirectory("sql-formatter");
+    try {
+      Path query = write(dir.resolve("query.sql"), QUERY);
+      Path nested = write(Files.createDirectory(dir.resolve("nested")).resolve("b.SQL"), QUERY);
+      Path text = write(dir.resolve("notes.txt"), QUERY);
+
+      assertEquals(0, this.run(dir.toString()));
+      assertEquals(FORMATTED, read(query));
+      assertEquals(FORMATTED, read(nested));
+      assertEquals(QUERY, read(text));
+
+      // Files given by name are formatted whatever their name
+      assertEquals(0, this.run(text.toString()));
+      assertEquals(FORMATTED, read(text));
+      assertEquals("", this.out());
+      assertEquals("", this.err());
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void checkLeavesFilesUntouched() throws IOException {
+    Path dir = Files.createTempDirectory("sql-formatter");
+    try {
+      Path formatted = write(dir.resolve("formatted.sql"), FORMATTED);
+      Path query = write(dir.resolve("query.sql"), QUERY);
+      FileTime modified = FileTime.fromMillis(1_000_000_000_000L);
+      Files.setLastModifiedTime(query, modified);
+
+      assertEquals(0, this.run("--check", formatted.toString()));
+      assertEquals("", this.out());
+
+      assertEquals(1, this.run("--check", dir.toString()));
+      assertEquals(query + System.lineSeparator(), this.out());
+      assertEquals(QUERY, read(query));
+      assertEquals(modified, Files.getLastModifiedTime(query));
+      assertEquals(FORMATTED, read(formatted));
+      try (Stream<Path> files = Files.list(dir)) {
+        assertEquals(2, files.count());
+      }
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void badArguments() throws IOException {
+    Path dir = Files.createTempDirectory("sql-formatter");
+    try {
+      Path query = write(dir.resolve("query.sql"), QUERY);
+
+      assertEquals(2, this.run());
+      assertTrue(this.err().startsWith("No files given"));
+      assertEquals(2, this.run("--verbose", query.toString()));
+      assertTrue(this.err().startsWith("Unknown option: --verbose"));
+      assertEquals(2, this.run("--dialect", "cobol", query.toString()));
+      assertTrue(this.err().startsWith("Unknown dialect: cobol"));
+      assertEquals(2, this.run("--workers", "0", query.toString()));
+      assertTrue(this.err().startsWith("Invalid number of workers: 0"));
+      assertEquals(2, this.run(query.toString(), "--dialect"));
+      assertTrue(this.err().startsWith("Missing value of --dialect"));
+      assertEquals(2, this.run(dir.resolve("missing.sql").toString()));
+      assertTrue(this.err().startsWith("Cannot list files"));
+      assertEquals(QUERY, read(query));
+
+      assertEquals(0, this.run("--dialect", "mysql", "--workers", "2", query.toString()));
+      assertEquals(FORMATTED, read(query));
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void rejectsInvalidUtf8() throws IOException {
+    Path dir = Files.createTempDirectory("sql-formatter");
+    try {
+      Path query = write(dir.resolve("query.sql"), QUERY);
+      byte[] invalid = {'s', 'e', 'l', 'e', 'c', 't', ' ', (byte) 0xC3, '(', ' ', 'x'};
+      Path latin = Files.write(dir.resolve("latin.sql"), invalid);
+
+      assertEquals(2, this.run(dir.toString()));
+      assertEquals(latin + ": Not valid UTF-8" + System.lineSeparator(), this.err());
+      assertArrayEquals(invalid, Files.readAllBytes(latin));
+      // Other files are still formatted
+      assertEquals(FORMATTED, read(query));
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void keepsPermissionsAndFollowsSymlinks() throws IOException {
+    if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      return;
+    }
+    Path dir = Files.createTempDirectory("sql-formatter");
+    try {
+      Path target = write(Files.createDirectory(dir.resolve("target")).resolve("query.txt"), QUERY);
+      Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+      Files.setPosixFilePermissions(target, permissions);
+      Path link = Files.createSymbolicLink(dir.resolve("link.sql"), target);
+
+      assertEquals(0, this.run(link.toString()));
+      assertTrue(Files.isSymbolicLink(link));
+      assertEquals(target, Files.readSymbolicLink(link));
+      assertEquals(FORMATTED, read(target));
+      assertEquals(permissions, Files.getPosixFilePermissions(target));
+      // No temporary file is left behind
+      try (Stream<Path> files = Files.list(target.getParent())) {
+        assertEquals(1, files.count());
+      }
+    } finally {
+      delete(dir);
+    }
+  }
+
+  // Runs the tool, capturing only the output of this run
+  private int run(String... args) throws IOException {
+    this.out.reset();
+    this.err.reset();
+    try (PrintStream out = new PrintStream(this.out, true, "UTF-8");
+        PrintStream err = new PrintStream(this.err, true, "UTF-8")) {
+      return Main.run(args, out, err);
+    }
+  }
+
+  private String out() throws IOException {
+    return this.out.toString("UTF-8");
+  }
+
+  private String err() throws IOException {
+    return this.err.toString("UTF-8");
+  }
+
+  private static Path write(Path file, String text) throws IOException {
+    return Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+
+  private static void delete(Path dir) throws IOException {
+    try (Stream<Path> walk = Files.walk(dir)) {
+      for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package com.github.vertical_blank.sqlformatter.cli;
+
+import com.github.vertical_blank.sqlformatter.SqlFormatter;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Formats SQL files in place. Instances can be shared between worker threads.
+ *
+ * <p>A file is memory-mapped and decoded from the mapping, so its bytes are never copied to the
+ * heap. The output is encoded as UTF-8 into a buffer kept by each worker and compared with the
+ * mapping, and only a file that changes is written, to a temporary file that is then moved over
+ * it.
+ */
+final class FileFormatter {
+  // Largest array the JVM reliably allocates
+  private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+  private final SqlFormatter.Formatter formatter;
+  private final boolean check;
+  // Output buffer of each worker, grown as needed
+  private final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<>();
+
+  /**
+   * @param formatter formatter of the dialect of the files
+   * @param check only tells whether files would change, without writing them
+   */
+  FileFormatter(SqlFormatter.Formatter formatter, boolean check) {
+    this.formatter = formatter;
+    this.check = check;
+  }
+
+  /**
+   * Formats a file, ending its output with a newline.
+   *
+   * @param file SQL file in UTF-8
+   * @return whether the file was changed, or would be changed when checking
+   * @throws IOException If the file cannot be read, is not valid UTF-8 or cannot be written
+   */
+  boolean format(Path file) throws IOException {
+    ByteBuffer output;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File is too large: " + size + " bytes");
+      }
+      MappedByteBuffer input = channel.map(MapMode.READ_ONLY, 0, size);
+      output = this.format(decode(input.duplicate()), (int) size);
+      if (output.equals(input)) {
+        return false;
+      }
+    }
+    if (!this.check) {
+      write(file.toRealPath(), output);
+    }
+    return true;
+  }
+
+  private static CharBuffer decode(ByteBuffer input) throws IOException {
+    try {
+      return StandardCharsets.UTF_8
+          .newDecoder()
+          .onMalformedInput(CodingErrorAction.REPORT)
+          .onUnmappableCharacter(CodingErrorAction.REPORT)
+          .decode(input);
+    } catch (CharacterCodingException e) {
+      throw new IOException("Not valid UTF-8", e);
+    }
+  }
+
+  // Formats into this worker's buffer, formatting again into a larger one when it is too small
+  private ByteBuffer format(CharSequence query, int size) {
+    ByteBuffer output = this.buffers.get();
+    int capacity = (int) Math.min(MAX_CAPACITY, 2L * size + 1);
+    if (output == null || output.capacity() < capacity) {
+      output = ByteBuffer.allocate(Math.max(capacity, 64 * 1024));
+    }
+    while (true) {
+      output.clear();
+      try {
+        this.formatter.format(query, output);
+        if (output.position() > 0) {
+          output.put((byte) '\n');
+        }
+        break;
+      } catch (BufferOverflowException e) {
+        if (output.capacity() == MAX_CAPACITY) {
+          throw e;
+        }
+        output = ByteBuffer.allocate((int) Math.min(MAX_CAPACITY, 2L * output.capacity()));
+      }
+    }
+    this.buffers.set(output);
+    output.flip();
+    return output;
+  }
+
+  private static void write(Path file, ByteBuffer output) throws IOException {
+    Path temp =
+        Files.createTempFile(file.getParent(), "." + file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        while (output.hasRemaining()) {
+          channel.write(output);
+        }
+      }
+      try {
+        Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(file));
+      } catch (UnsupportedOperationException e) {
+        // Not a POSIX file system, where the temporary file gets the usual permissions
+      }
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+}
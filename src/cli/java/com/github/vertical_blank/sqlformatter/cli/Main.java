@@ -0,0 +1,183 @@
+package com.github.vertical_blank.sqlformatter.cli;
+
+import com.github.vertical_blank.sqlformatter.SqlFormatter;
+import com.github.vertical_blank.sqlformatter.languages.Dialect;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command-line tool formatting SQL files in place, or checking that they are formatted.
+ *
+ * <pre>
+ * java -jar sql-formatter-cli.jar [--dialect NAME] [--check] [--workers N] PATH...
+ * </pre>
+ *
+ * <p>Directories are searched for files ending with ".sql", while files given by name are
+ * formatted whatever their name. Files are formatted in parallel on a pool of workers, one per
+ * processor unless set with --workers. The exit status is 0 on success, 1 when --check finds files
+ * that would change, which are listed, and 2 on bad arguments or when a file cannot be formatted.
+ */
+public final class Main {
+  private static final String USAGE =
+      "Usage: sql-formatter [--dialect NAME] [--check] [--workers N] PATH...\n"
+          + "Formats SQL files in place, searching directories for *.sql files.\n"
+          + "\n"
+          + "  --dialect NAME  Dialect of the files by name or alias, StandardSql by default:\n"
+          + "                  "
+          + Arrays.stream(Dialect.values()).map(Dialect::name).collect(Collectors.joining(", "))
+          + "\n"
+          + "  --check         Lists files that are not formatted instead of writing them,\n"
+          + "                  exiting with 1 if there are any.\n"
+          + "  --workers N     Number of files formatted at once. Defaults to the number of\n"
+          + "                  processors.\n";
+
+  private Main() {}
+
+  public static void main(String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * Runs the tool.
+   *
+   * @param args command-line arguments
+   * @param out destination of the files listed by --check
+   * @param err destination of errors
+   * @return exit status
+   */
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    Dialect dialect = Dialect.StandardSql;
+    boolean check = false;
+    int workers = Runtime.getRuntime().availableProcessors();
+    List<Path> paths = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.equals("--help")) {
+        out.print(USAGE);
+        return 0;
+      } else if (arg.equals("--check")) {
+        check = true;
+      } else if (arg.equals("--dialect") || arg.equals("--workers")) {
+        if (++i == args.length) {
+          return usage(err, "Missing value of " + arg);
+        }
+        String value = args[i];
+        if (arg.equals("--dialect")) {
+          Optional<Dialect> named = Dialect.nameOf(value);
+          if (!named.isPresent()) {
+            return usage(err, "Unknown dialect: " + value);
+          }
+          dialect = named.get();
+        } else {
+          workers = value.matches("[0-9]{1,4}") ? Integer.parseInt(value) : 0;
+          if (workers < 1) {
+            return usage(err, "Invalid number of workers: " + value);
+          }
+        }
+      } else if (arg.startsWith("--")) {
+        return usage(err, "Unknown option: " + arg);
+      } else {
+        paths.add(Paths.get(arg));
+      }
+    }
+    if (paths.isEmpty()) {
+      return usage(err, "No files given");
+    }
+
+    List<Path> files;
+    try {
+      files = files(paths);
+    } catch (IOException | UncheckedIOException e) {
+      err.println("Cannot list files: " + e.getMessage());
+      return 2;
+    }
+    FileFormatter formatter = new FileFormatter(SqlFormatter.of(dialect), check);
+    ForkJoinPool pool = new ForkJoinPool(workers);
+    List<Outcome> outcomes;
+    try {
+      outcomes =
+          pool.submit(
+                  () ->
+                      files.parallelStream()
+                          .map(file -> format(formatter, file))
+                          .collect(Collectors.toList()))
+              .get();
+    } catch (InterruptedException | ExecutionException e) {
+      err.println("Formatting failed: " + e);
+      return 2;
+    } finally {
+      pool.shutdown();
+    }
+
+    int status = 0;
+    for (Outcome outcome : outcomes) {
+      if (outcome.error != null) {
+        err.println(outcome.file + ": " + outcome.error);
+        status = 2;
+      } else if (outcome.changed && check) {
+        out.println(outcome.file);
+        status = Math.max(status, 1);
+      }
+    }
+    return status;
+  }
+
+  private static int usage(PrintStream err, String message) {
+    err.println(message);
+    err.print(USAGE);
+    return 2;
+  }
+
+  // Files given by name and *.sql files in the directories given, in order
+  private static List<Path> files(List<Path> paths) throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (Path path : paths) {
+      if (Files.isDirectory(path)) {
+        try (Stream<Path> walk = Files.walk(path)) {
+          walk.filter(Files::isRegularFile)
+              .filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".sql"))
+              .sorted()
+              .forEach(files::add);
+        }
+      } else if (Files.exists(path)) {
+        files.add(path);
+      } else {
+        throw new IOException("No such file or directory: " + path);
+      }
+    }
+    return files;
+  }
+
+  private static Outcome format(FileFormatter formatter, Path file) {
+    try {
+      return new Outcome(file, formatter.format(file), null);
+    } catch (IOException | RuntimeException e) {
+      return new Outcome(file, false, e.getMessage() == null ? e.toString() : e.getMessage());
+    }
+  }
+
+  private static final class Outcome {
+    private final Path file;
+    private final boolean changed;
+    private final String error;
+
+    private Outcome(Path file, boolean changed, String error) {
+      this.file = file;
+      this.changed = changed;
+      this.error = error;
+    }
+  }
+}
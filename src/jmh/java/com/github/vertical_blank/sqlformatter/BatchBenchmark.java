@@ -0,0 +1,81 @@
+package com.github.vertical_blank.sqlformatter;
+
+import com.github.vertical_blank.sqlformatter.core.FormatConfig;
+import com.github.vertical_blank.sqlformatter.languages.Dialect;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Formats a batch of distinct short queries, one call per query or one batch call, and reports
+ * throughput in batches per second. Queries per second is that times the batch size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+  @Param({"1000"})
+  public int batchSize;
+
+  @Param({"StandardSql", "PostgreSql"})
+  public Dialect dialect;
+
+  private SqlFormatter.Formatter formatter;
+  private FormatConfig cfg;
+  private List<String> queries;
+
+  @Setup
+  public void setup() {
+    this.formatter = SqlFormatter.of(this.dialect);
+    this.cfg = FormatConfig.builder().build();
+    this.queries = new ArrayList<>();
+    for (int i = 0; i < this.batchSize; i++) {
+      this.queries.add(
+          "SELECT id, name, count(*) FROM users_"
+              + (i % 10)
+              + " WHERE id = "
+              + i
+              + " AND status IN ('active', 'pending') GROUP BY id, name ORDER BY name LIMIT "
+              + (i % 100 + 1));
+    }
+  }
+
+  @Benchmark
+  public List<String> formatEach() {
+    return this.queries.stream()
+        .map(query -> this.formatter.format(query, this.cfg))
+        .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<String> formatAll() {
+    return this.formatter.formatAll(this.queries, this.cfg);
+  }
+
+  @Benchmark
+  public List<String> formatAllParallel() {
+    return this.formatter.formatAll(this.queries, this.cfg, ForkJoinPool.commonPool());
+  }
+
+  @Benchmark
+  public List<String> formatAllStream() {
+    return this.formatter.formatAll(this.queries.stream(), this.cfg).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,13 @@
+package com.github.vertical_blank.sqlformatter;
+
+import com.github.vertical_blank.sqlformatter.core.DialectConfig;
+import com.github.vertical_blank.sqlformatter.core.FormatConfig;
+import com.github.vertical_blank.sqlformatter.languages.Dialect;
+
+final class Benchmarks {
+  private Benchmarks() {}
+
+  static DialectConfig dialectConfig(Dialect dialect) {
+    return dialect.func.apply(FormatConfig.builder().build()).dialectConfig();
+  }
+}
@@ -0,0 +1,43 @@
+package com.github.vertical_blank.sqlformatter;
+
+import com.github.vertical_blank.sqlformatter.languages.Dialect;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Formats every {@link QueryShape} with every {@link Dialect}. */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatBenchmark {
+
+  @Param public Dialect dialect;
+
+  @Param public QueryShape shape;
+
+  private SqlFormatter.Formatter formatter;
+  private String query;
+
+  @Setup
+  public void setup() {
+    this.formatter = SqlFormatter.of(this.dialect);
+    this.query = this.shape.build(Benchmarks.dialectConfig(this.dialect));
+  }
+
+  @Benchmark
+  public String format() {
+    return this.formatter.format(this.query);
+  }
+}
@@ -0,0 +1,124 @@
+package com.github.vertical_blank.sqlformatter;
+
+import com.github.vertical_blank.sqlformatter.core.DialectConfig;
+
+/** Queries the benchmarks run on, generated with the syntax of each dialect. */
+public enum QueryShape {
+  /** A single short statement, as issued by an OLTP application. */
+  TINY_OLTP {
+    @Override
+    String build(DialectConfig cfg) {
+      return "SELECT id, name, status FROM users WHERE id = 42 AND status = 'active'";
+    }
+  },
+  /** A SELECT of 200 columns with aliases and function calls. */
+  WIDE_SELECT {
+    @Override
+    String build(DialectConfig cfg) {
+      StringBuilder sb = new StringBuilder("SELECT ");
+      for (int i = 0; i < 200; i++) {
+        if (i > 0) {
+          sb.append(", ");
+        }
+        if (i % 10 == 0) {
+          sb.append("coalesce(t.col").append(i).append(", 0) AS c").append(i);
+        } else {
+          sb.append("t.col").append(i);
+        }
+      }
+      return sb.append(" FROM wide_table t WHERE t.col0 > 10 ORDER BY t.col1").toString();
+    }
+  },
+  /** Subqueries nested 30 levels deep. */
+  NESTED_SUBQUERIES {
+    @Override
+    String build(DialectConfig cfg) {
+      String query = "SELECT id FROM t0 WHERE flag = 1";
+      for (int i = 1; i <= 30; i++) {
+        query =
+            String.format(
+                "SELECT a.id, a.v%1$d FROM t%1$d a JOIN (%2$s) b ON a.id = b.id"
+                    + " WHERE a.v%1$d IN (SELECT v FROM lookup WHERE k = %1$d)",
+                i, query);
+      }
+      return query;
+    }
+  },
+  /** A script of about 5 MB made of many statements. */
+  LARGE_SCRIPT {
+    @Override
+    String build(DialectConfig cfg) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; sb.length() < 5 * 1024 * 1024; i++) {
+        sb.append("INSERT INTO log (id, msg, created) VALUES (")
+            .append(i)
+            .append(", 'message ")
+            .append(i)
+            .append("', '2020-01-01');\n");
+        sb.append("UPDATE counters SET n = n + 1 WHERE id = ").append(i % 100).append(";\n");
+        sb.append("SELECT a, b, count(*) FROM t")
+            .append(i % 10)
+            .append(" WHERE x = 'v' AND y IN (1, 2, 3) GROUP BY a, b HAVING count(*) > 1;\n");
+      }
+      return sb.toString();
+    }
+  },
+  /** CREATE TABLE statements with a line comment and a block comment on every column. */
+  COMMENT_HEAVY_DDL {
+    @Override
+    String build(DialectConfig cfg) {
+      String lineComment = cfg.lineCommentTypes.get(0);
+      StringBuilder sb = new StringBuilder();
+      for (int table = 0; table < 10; table++) {
+        sb.append("/*\n * Table ").append(table).append("\n */\n");
+        sb.append("CREATE TABLE t").append(table).append(" (\n");
+        for (int i = 0; i < 30; i++) {
+          sb.append("  ")
+              .append(lineComment)
+              .append(" column ")
+              .append(i)
+              .append(" of table ")
+              .append(table)
+              .append('\n');
+          sb.append("  c").append(i).append(" VARCHAR(100) /* nullable */,\n");
+        }
+        sb.append("  id INT PRIMARY KEY\n);\n");
+      }
+      return sb.toString();
+    }
+  },
+  /** A multi-row INSERT where every value is a placeholder. */
+  PLACEHOLDER_INSERT {
+    @Override
+    String build(DialectConfig cfg) {
+      StringBuilder sb = new StringBuilder("INSERT INTO t (");
+      for (int col = 0; col < 50; col++) {
+        sb.append(col > 0 ? ", " : "").append('c').append(col);
+      }
+      sb.append(") VALUES ");
+      int n = 0;
+      for (int row = 0; row < 20; row++) {
+        sb.append(row > 0 ? ", (" : "(");
+        for (int col = 0; col < 50; col++) {
+          sb.append(col > 0 ? ", " : "").append(placeholder(cfg, n++));
+        }
+        sb.append(')');
+      }
+      return sb.toString();
+    }
+  };
+
+  abstract String build(DialectConfig cfg);
+
+  // Alternates between indexed and named placeholders when the dialect has both
+  private static String placeholder(DialectConfig cfg, int n) {
+    boolean indexed =
+        !cfg.indexedPlaceholderTypes.isEmpty()
+            && (cfg.namedPlaceholderTypes.isEmpty() || n % 2 == 0);
+    if (indexed) {
+      String type = cfg.indexedPlaceholderTypes.get(0);
+      return type.equals("?") ? type : type + (n + 1);
+    }
+    return cfg.namedPlaceholderTypes.get(0) + "p" + n;
+  }
+}
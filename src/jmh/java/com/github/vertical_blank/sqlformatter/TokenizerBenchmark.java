@@ -0,0 +1,58 @@
+package com.github.vertical_blank.sqlformatter;
+
+import com.github.vertical_blank.sqlformatter.core.Token;
+import com.github.vertical_blank.sqlformatter.core.Tokenizer;
+import com.github.vertical_blank.sqlformatter.core.util.JSLikeList;
+import com.github.vertical_blank.sqlformatter.languages.Dialect;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tokenizes every {@link QueryShape} with every {@link Dialect}. The tokens counter turns the
+ * throughput into tokens per second, so shapes of different sizes can be compared per token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+
+  @Param public Dialect dialect;
+
+  @Param public QueryShape shape;
+
+  private Tokenizer tokenizer;
+  private String query;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Counters {
+    public long tokens;
+  }
+
+  @Setup
+  public void setup() {
+    this.tokenizer = Tokenizer.of(Benchmarks.dialectConfig(this.dialect));
+    this.query = this.shape.build(Benchmarks.dialectConfig(this.dialect));
+  }
+
+  @Benchmark
+  public JSLikeList<Token> tokenize(Counters counters) {
+    JSLikeList<Token> tokens = this.tokenizer.tokenize(this.query);
+    counters.tokens += tokens.size();
+    return tokens;
+  }
+}
@@ -0,0 +1,67 @@
+package com.github.vertical_blank.sqlformatter;
+
+import com.github.vertical_blank.sqlformatter.core.FormatConfig;
+import com.github.vertical_blank.sqlformatter.languages.Dialect;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Formats an INSERT of 100k rows in a single VALUES list, where every row and every call in a row
+ * is a parenthesized block checked for fitting on one line. A maxColumnLength large enough for the
+ * whole list makes each block measurable only once it closes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ValuesInsertBenchmark {
+
+  @Param({"100000"})
+  public int rows;
+
+  @Param({"50", "2147483647"})
+  public int maxColumnLength;
+
+  private SqlFormatter.Formatter formatter;
+  private FormatConfig cfg;
+  private String query;
+
+  @Setup
+  public void setup() {
+    this.formatter = SqlFormatter.of(Dialect.StandardSql);
+    this.cfg = FormatConfig.builder().maxColumnLength(this.maxColumnLength).build();
+    StringBuilder sb = new StringBuilder("INSERT INTO events (id, name, kind, score) VALUES ");
+    for (int i = 0; i < this.rows; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append('(')
+          .append(i)
+          .append(", 'event ")
+          .append(i)
+          .append("', lower('KIND_")
+          .append(i % 7)
+          .append("'), (")
+          .append(i)
+          .append(" + 1) * 2)");
+    }
+    this.query = sb.toString();
+  }
+
+  @Benchmark
+  public String format() {
+    return this.formatter.format(this.query, this.cfg);
+  }
+}
@@ -0,0 +1,61 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Indents one newline per level while nesting down to depth and back, the way {@link
+ * AbstractFormatter} does on every newline. Run with {@code -prof gc}: gc.alloc.rate.norm stays at
+ * 0 B/op once the indent of every depth has been built.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndentationBenchmark {
+
+  @Param({"1", "4", "16", "64"})
+  public int depth;
+
+  private Indentation indentation;
+  private StringBuilder query;
+
+  @Setup
+  public void setup() {
+    this.indentation = new Indentation("  ", Integer.MAX_VALUE);
+    this.query = new StringBuilder();
+    // Sizes the buffer and builds every indent up front
+    this.newlines();
+  }
+
+  @Benchmark
+  public int newlines() {
+    this.query.setLength(0);
+    for (int i = 0; i < this.depth; i++) {
+      if (i % 2 == 0) {
+        this.indentation.increaseToplevel();
+      } else {
+        this.indentation.increaseBlockLevel();
+      }
+      this.query.append('\n').append(this.indentation.getIndent());
+    }
+    for (int i = 0; i < this.depth; i++) {
+      this.indentation.decreaseBlockLevel();
+      this.query.append('\n').append(this.indentation.getIndent());
+    }
+    this.indentation.resetIndentation();
+    return this.query.length();
+  }
+}
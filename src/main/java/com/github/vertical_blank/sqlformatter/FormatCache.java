@@ -0,0 +1,291 @@
+package com.github.vertical_blank.sqlformatter;
+
+import com.github.vertical_blank.sqlformatter.core.AbstractFormatter;
+import com.github.vertical_blank.sqlformatter.core.FormatConfig;
+import com.github.vertical_blank.sqlformatter.core.FormatLimits;
+import com.github.vertical_blank.sqlformatter.core.FormatMetrics;
+import com.github.vertical_blank.sqlformatter.core.FormatSample;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of formatted queries, shared by formatters created with {@link
+ * SqlFormatter.Formatter#cached(FormatCache)}.
+ *
+ * <p>Results are keyed by formatter, query text and FormatConfig. Calls with params are never
+ * cached. The cache is split into segments locked independently, each holding an equal share of
+ * the bounds and evicting its least recently used entries, so threads formatting different queries
+ * rarely wait for each other.
+ */
+public final class FormatCache {
+  private static final int MAX_SEGMENTS = 16;
+  private static final int MIN_SEGMENT_ENTRIES = 64;
+
+  private final Segment[] segments;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  private FormatCache(int maxEntries, long maxChars) {
+    // Small caches stay a single exact LRU; larger ones give every segment a fair share
+    long perSegment = Math.min(maxEntries, maxChars) / MIN_SEGMENT_ENTRIES;
+    int count = Integer.highestOneBit((int) Math.max(1, Math.min(MAX_SEGMENTS, perSegment)));
+    this.segments = new Segment[count];
+    for (int i = 0; i < count; i++) {
+      this.segments[i] = new Segment(maxEntries / count, maxChars / count);
+    }
+  }
+
+  /**
+   * Returns a new empty Builder.
+   *
+   * @return A new empty Builder
+   */
+  public static FormatCacheBuilder builder() {
+    return new FormatCacheBuilder();
+  }
+
+  String format(
+      AbstractFormatter formatter, String query, FormatConfig cfg, FormatMetrics metrics) {
+    if (!cfg.params.isEmpty()) {
+      return formatter.format(query, cfg, metrics);
+    }
+    Key key = new Key(formatter, query, cfg);
+    Segment segment = this.segments[key.hash & (this.segments.length - 1)];
+    String result;
+    synchronized (segment) {
+      result = segment.get(key);
+    }
+    if (result != null) {
+      this.hits.increment();
+      if (metrics != null) {
+        metrics.record(FormatSample.cacheHit(query.length(), result.length()));
+      }
+      return result;
+    }
+    this.misses.increment();
+    // Formatted outside the lock, so a slow query does not hold up its segment
+    result = formatter.format(query, cfg, metrics);
+    if (result == query && cfg.limits != null) {
+      // Returned unchanged over a limit, which may not happen next time if it was the time limit
+      return result;
+    }
+    synchronized (segment) {
+      this.evictions.add(segment.add(key, result));
+    }
+    return result;
+  }
+
+  /**
+   * @return Number of calls answered from the cache
+   */
+  public long hitCount() {
+    return this.hits.sum();
+  }
+
+  /**
+   * @return Number of cacheable calls that had to be formatted
+   */
+  public long missCount() {
+    return this.misses.sum();
+  }
+
+  /**
+   * @return Number of entries evicted to stay within the bounds
+   */
+  public long evictionCount() {
+    return this.evictions.sum();
+  }
+
+  /**
+   * @return Number of cached entries
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : this.segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return Total chars of the cached queries and results
+   */
+  public long weight() {
+    long weight = 0;
+    for (Segment segment : this.segments) {
+      synchronized (segment) {
+        weight += segment.chars;
+      }
+    }
+    return weight;
+  }
+
+  /** Removes every entry. Counters are kept. */
+  public void clear() {
+    for (Segment segment : this.segments) {
+      synchronized (segment) {
+        segment.clear();
+        segment.chars = 0;
+      }
+    }
+  }
+
+  private static final class Key {
+    private final AbstractFormatter formatter;
+    private final String query;
+    private final String indent;
+    private final int maxColumnLength;
+    private final boolean uppercase;
+    private final int linesBetweenQueries;
+    private final boolean skipWhitespaceNearBlockParentheses;
+    private final boolean minify;
+    private final boolean stripComments;
+    private final FormatLimits limits;
+    private final int hash;
+
+    private Key(AbstractFormatter formatter, String query, FormatConfig cfg) {
+      this.formatter = formatter;
+      this.query = query;
+      this.indent = cfg.indent;
+      this.maxColumnLength = cfg.maxColumnLength;
+      this.uppercase = cfg.uppercase;
+      // Unset means one line, and no line is added for any value below one
+      this.linesBetweenQueries =
+          cfg.linesBetweenQueries == null ? 1 : Math.max(0, cfg.linesBetweenQueries);
+      this.skipWhitespaceNearBlockParentheses = cfg.skipWhitespaceNearBlockParentheses;
+      this.minify = cfg.minify;
+      this.stripComments = cfg.stripComments;
+      this.limits = cfg.limits;
+      int h =
+          Objects.hash(
+              System.identityHashCode(formatter),
+              query,
+              this.indent,
+              this.maxColumnLength,
+              this.uppercase,
+              this.linesBetweenQueries,
+              this.skipWhitespaceNearBlockParentheses,
+              this.minify,
+              this.stripComments,
+              this.limits);
+      // Mix the high bits into the low ones, which pick the segment
+      this.hash = h ^ (h >>> 16);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return this.hash == that.hash
+          && this.formatter == that.formatter
+          && this.maxColumnLength == that.maxColumnLength
+          && this.uppercase == that.uppercase
+          && this.linesBetweenQueries == that.linesBetweenQueries
+          && this.skipWhitespaceNearBlockParentheses == that.skipWhitespaceNearBlockParentheses
+          && this.minify == that.minify
+          && this.stripComments == that.stripComments
+          && this.query.equals(that.query)
+          && Objects.equals(this.indent, that.indent)
+          && Objects.equals(this.limits, that.limits);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+
+    private int chars() {
+      return this.query.length();
+    }
+  }
+
+  // Entries in access order, oldest first
+  private static final class Segment extends LinkedHashMap<Key, String> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxEntries;
+    private final long maxChars;
+    private long chars;
+
+    private Segment(int maxEntries, long maxChars) {
+      super(16, 0.75f, true);
+      this.maxEntries = maxEntries;
+      this.maxChars = maxChars;
+    }
+
+    // Returns the number of evicted entries
+    private int add(Key key, String result) {
+      long weight = (long) key.chars() + result.length();
+      if (weight > this.maxChars) {
+        return 0;
+      }
+      String previous = this.put(key, result);
+      if (previous != null) {
+        this.chars -= key.chars() + previous.length();
+      }
+      this.chars += weight;
+
+      int evicted = 0;
+      Iterator<Map.Entry<Key, String>> eldest = this.entrySet().iterator();
+      while (this.size() > this.maxEntries || this.chars > this.maxChars) {
+        Map.Entry<Key, String> entry = eldest.next();
+        this.chars -= entry.getKey().chars() + entry.getValue().length();
+        eldest.remove();
+        evicted++;
+      }
+      return evicted;
+    }
+  }
+
+  /** FormatCacheBuilder */
+  public static class FormatCacheBuilder {
+    private int maxEntries = 10_000;
+    private long maxChars = Long.MAX_VALUE;
+
+    FormatCacheBuilder() {}
+
+    /**
+     * @param maxEntries Maximum number of cached queries, default is 10000
+     * @return This
+     */
+    public FormatCacheBuilder maxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * @param maxChars Maximum total length of cached queries and results, unbounded by default
+     * @return This
+     */
+    public FormatCacheBuilder maxChars(long maxChars) {
+      this.maxChars = maxChars;
+      return this;
+    }
+
+    /**
+     * Returns an instance of FormatCache created from the fields set on this builder.
+     *
+     * @return FormatCache
+     */
+    public FormatCache build() {
+      if (this.maxEntries <= 0) {
+        throw new IllegalArgumentException("maxEntries must be positive: " + this.maxEntries);
+      }
+      if (this.maxChars <= 0) {
+        throw new IllegalArgumentException("maxChars must be positive: " + this.maxChars);
+      }
+      return new FormatCache(this.maxEntries, this.maxChars);
+    }
+  }
+}
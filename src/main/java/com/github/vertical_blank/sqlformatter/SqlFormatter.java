@@ -3,13 +3,32 @@ package com.github.vertical_blank.sqlformatter;
 import com.github.vertical_blank.sqlformatter.core.AbstractFormatter;
 import com.github.vertical_blank.sqlformatter.core.DialectConfig;
 import com.github.vertical_blank.sqlformatter.core.FormatConfig;
+import com.github.vertical_blank.sqlformatter.core.FormatMetrics;
+import com.github.vertical_blank.sqlformatter.core.FormatStatistics;
+import com.github.vertical_blank.sqlformatter.core.FormattedDocument;
+import com.github.vertical_blank.sqlformatter.core.TokenizedQuery;
 import com.github.vertical_blank.sqlformatter.languages.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class SqlFormatter {
+  private static final Map<Dialect, Formatter> formatters = new EnumMap<>(Dialect.class);
+
+  static {
+    for (Dialect dialect : Dialect.values()) {
+      formatters.put(dialect, new Formatter(dialect));
+    }
+  }
+
   /**
    * FormatConfig whitespaces in a query to make it easier to read.
    *
@@ -55,28 +74,223 @@ public class SqlFormatter {
 
   public static Formatter of(String name) {
     return Dialect.nameOf(name)
-        .map(Formatter::new)
+        .map(SqlFormatter::of)
         .orElseThrow(() -> new RuntimeException("Unsupported SQL dialect: " + name));
   }
 
+  /**
+   * Returns the formatter of the dialect. Formatters are immutable, so the same instance is
+   * returned on every call and can be shared between threads.
+   *
+   * @param dialect Dialect
+   * @return Formatter
+   */
   public static Formatter of(Dialect dialect) {
-    return new Formatter(dialect);
+    return formatters.get(dialect);
   }
 
+  /** Formats queries of a dialect. Instances are immutable and safe for concurrent use. */
   public static class Formatter {
 
-    private final Function<FormatConfig, AbstractFormatter> underlying;
+    private final AbstractFormatter underlying;
+    private final FormatCache cache;
+    private final FormatMetrics metrics;
 
-    private Formatter(Function<FormatConfig, AbstractFormatter> underlying) {
+    private Formatter(AbstractFormatter underlying, FormatCache cache, FormatMetrics metrics) {
       this.underlying = underlying;
+      this.cache = cache;
+      this.metrics = metrics;
+    }
+
+    private Formatter(AbstractFormatter underlying) {
+      this(underlying, null, null);
     }
 
     private Formatter(Dialect dialect) {
-      this(dialect.func);
+      this(dialect.func.apply(FormatConfig.builder().build()));
     }
 
     public String format(String query, FormatConfig cfg) {
-      return this.underlying.apply(cfg).format(query);
+      if (this.cache != null) {
+        return this.cache.format(this.underlying, query, cfg, this.metrics);
+      }
+      return this.underlying.format(query, cfg, this.metrics);
+    }
+
+    /**
+     * Breaks a query into tokens once, for formatting it under several FormatConfigs.
+     *
+     * @param query sql
+     * @return Tokens of the query, which can be formatted by this formatter
+     */
+    public TokenizedQuery tokenize(String query) {
+      return this.underlying.tokenize(query);
+    }
+
+    /**
+     * Formats a query tokenized by {@link #tokenize(String)}, without reading the query again.
+     * These calls are not cached.
+     *
+     * @param query Tokens of the query
+     * @param cfg FormatConfig
+     * @return Formatted query
+     */
+    public String format(TokenizedQuery query, FormatConfig cfg) {
+      return this.underlying.format(query, cfg, this.metrics);
+    }
+
+    public String format(TokenizedQuery query) {
+      return format(query, FormatConfig.builder().build());
+    }
+
+    /**
+     * Formats a SQL script statement by statement, writing the output as it is produced.
+     *
+     * @param in SQL script
+     * @param out Destination of the formatted script
+     * @param cfg FormatConfig
+     * @throws IOException If reading or writing fails
+     * @see AbstractFormatter#format(Reader, Writer, FormatConfig)
+     */
+    public void format(Reader in, Writer out, FormatConfig cfg) throws IOException {
+      this.underlying.format(in, out, cfg);
+    }
+
+    public void format(Reader in, Writer out) throws IOException {
+      format(in, out, FormatConfig.builder().build());
+    }
+
+    /**
+     * Formats a query into the given destination, such as a Writer, StringBuilder or CharBuffer,
+     * without making a String of the output. These calls are not cached.
+     *
+     * @param query sql
+     * @param out Destination of the formatted query
+     * @param cfg FormatConfig
+     * @throws IOException If appending fails
+     * @see AbstractFormatter#format(CharSequence, Appendable, FormatConfig, FormatMetrics)
+     */
+    public void format(CharSequence query, Appendable out, FormatConfig cfg) throws IOException {
+      this.underlying.format(query, out, cfg, this.metrics);
+    }
+
+    public void format(CharSequence query, Appendable out) throws IOException {
+      format(query, out, FormatConfig.builder().build());
+    }
+
+    /**
+     * Formats a query into the given buffer as UTF-8, without making a String of the output. These
+     * calls are not cached.
+     *
+     * @param query sql
+     * @param out Destination of the formatted query, advanced past the bytes written
+     * @param cfg FormatConfig
+     * @see AbstractFormatter#format(CharSequence, ByteBuffer, FormatConfig, FormatMetrics)
+     */
+    public void format(CharSequence query, ByteBuffer out, FormatConfig cfg) {
+      this.underlying.format(query, out, cfg, this.metrics);
+    }
+
+    public void format(CharSequence query, ByteBuffer out) {
+      format(query, out, FormatConfig.builder().build());
+    }
+
+    /**
+     * Formats a multi-statement script, formatting its statements in parallel. The result is the
+     * same as {@link #format(String, FormatConfig)}.
+     *
+     * @param query sql
+     * @param cfg FormatConfig
+     * @param pool Pool to format statements on
+     * @return Formatted query
+     */
+    public String formatParallel(String query, FormatConfig cfg, ForkJoinPool pool) {
+      return this.underlying.formatParallel(query, cfg, pool);
+    }
+
+    public String formatParallel(String query, FormatConfig cfg) {
+      return formatParallel(query, cfg, ForkJoinPool.commonPool());
+    }
+
+    public String formatParallel(String query) {
+      return formatParallel(query, FormatConfig.builder().build());
+    }
+
+    /**
+     * Formats a SQL script for editing: the returned document formats the script again after each
+     * edit, only reformatting the statements the edit affects.
+     *
+     * @param query sql
+     * @param cfg FormatConfig
+     * @return Document with the formatted script
+     * @see FormattedDocument#edit(int, int, String)
+     */
+    public FormattedDocument formatDocument(String query, FormatConfig cfg) {
+      return this.underlying.formatDocument(query, cfg);
+    }
+
+    public FormattedDocument formatDocument(String query) {
+      return formatDocument(query, FormatConfig.builder().build());
+    }
+
+    /**
+     * Formats a batch of independent queries, reusing the tokenizer and formatting buffers between
+     * them. The results are the same as formatting each query with {@link #format(String,
+     * FormatConfig)}.
+     *
+     * @param queries sql queries
+     * @param cfg FormatConfig
+     * @return Formatted queries, in the same order
+     * @see AbstractFormatter#formatAll(List, FormatConfig)
+     */
+    public List<String> formatAll(List<String> queries, FormatConfig cfg) {
+      if (this.cache != null || this.metrics != null) {
+        return queries.stream().map(query -> format(query, cfg)).collect(Collectors.toList());
+      }
+      return this.underlying.formatAll(queries, cfg);
+    }
+
+    public List<String> formatAll(List<String> queries) {
+      return formatAll(queries, FormatConfig.builder().build());
+    }
+
+    /**
+     * Formats a batch of independent queries in parallel. Results keep the order of the queries.
+     *
+     * @param queries sql queries
+     * @param cfg FormatConfig
+     * @param pool Pool to format queries on
+     * @return Formatted queries, in the same order
+     */
+    public List<String> formatAll(List<String> queries, FormatConfig cfg, ForkJoinPool pool) {
+      if (this.cache != null || this.metrics != null) {
+        return pool.submit(
+                () ->
+                    queries.parallelStream()
+                        .map(query -> format(query, cfg))
+                        .collect(Collectors.toList()))
+            .join();
+      }
+      return this.underlying.formatAll(queries, cfg, pool);
+    }
+
+    /**
+     * Formats a stream of independent queries lazily, reusing formatting buffers between them. A
+     * parallel stream is formatted in parallel.
+     *
+     * @param queries sql queries
+     * @param cfg FormatConfig
+     * @return Stream of formatted queries
+     */
+    public Stream<String> formatAll(Stream<String> queries, FormatConfig cfg) {
+      if (this.cache != null || this.metrics != null) {
+        return queries.map(query -> format(query, cfg));
+      }
+      return this.underlying.formatAll(queries, cfg);
+    }
+
+    public Stream<String> formatAll(Stream<String> queries) {
+      return formatAll(queries, FormatConfig.builder().build());
     }
 
     public String format(String query, String indent, List<?> params) {
@@ -104,14 +318,40 @@ public class SqlFormatter {
     }
 
     public Formatter extend(UnaryOperator<DialectConfig> operator) {
+      DialectConfig dialectConfig = operator.apply(this.underlying.dialectConfig());
       return new Formatter(
-          cfg ->
-              new AbstractFormatter(cfg) {
-                @Override
-                public DialectConfig dialectConfig() {
-                  return operator.apply(Formatter.this.underlying.apply(cfg).dialectConfig());
-                }
-              });
+          new AbstractFormatter(FormatConfig.builder().build()) {
+            @Override
+            public DialectConfig dialectConfig() {
+              return dialectConfig;
+            }
+          },
+          this.cache,
+          this.metrics);
+    }
+
+    /**
+     * Returns a formatter that keeps the results of {@link #format(String, FormatConfig)} in the
+     * given cache. Calls with params, streaming, writing to a destination and parallel formatting
+     * are not cached.
+     *
+     * @param cache FormatCache, which can be shared by formatters of different dialects
+     * @return Formatter
+     */
+    public Formatter cached(FormatCache cache) {
+      return new Formatter(this.underlying, cache, this.metrics);
+    }
+
+    /**
+     * Returns a formatter that reports every call of {@link #format(String, FormatConfig)} to the
+     * given metrics, including calls answered from the cache. Batches are reported query by query,
+     * while formatting from a Reader and {@link #formatParallel} are not measured.
+     *
+     * @param metrics FormatMetrics, such as a {@link FormatStatistics}
+     * @return Formatter
+     */
+    public Formatter withMetrics(FormatMetrics metrics) {
+      return new Formatter(this.underlying, this.cache, metrics);
     }
   }
 }
@@ -1,48 +1,180 @@
 package com.github.vertical_blank.sqlformatter.core;
 
-import com.github.vertical_blank.sqlformatter.core.util.JSLikeList;
 import com.github.vertical_blank.sqlformatter.core.util.Util;
 import com.github.vertical_blank.sqlformatter.languages.DialectConfigurator;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Base of every dialect formatter.
+ *
+ * <p>Instances are immutable and can be shared between threads. State of a single call is kept in
+ * a {@link FormatContext} that lives on the calling thread's stack.
+ */
 public abstract class AbstractFormatter implements DialectConfigurator {
+  // Formatter classes overriding tokenOverride(Token), written before formatters were shared
+  private static final ClassValue<Boolean> overridesTokenOverride =
+      new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+          for (Class<?> c = type; c != AbstractFormatter.class; c = c.getSuperclass()) {
+            try {
+              c.getDeclaredMethod("tokenOverride", Token.class);
+              return true;
+            } catch (NoSuchMethodException e) {
+              // look in the superclass
+            }
+          }
+          return false;
+        }
+      };
+
   private final FormatConfig cfg;
-  private final Indentation indentation;
-  private final InlineBlock inlineBlock;
-  private final Params params;
-  protected Token previousReservedToken;
-  private JSLikeList<Token> tokens;
-  private int index;
+  // Looked up on first use. Tokenizers are immutable, so a thread seeing another's is fine.
+  private Tokenizer tokenizer;
+  private final boolean legacyTokenOverride;
+  // Context of the call tokenOverride(Token) runs in, set while holding the lock on this
+  private FormatContext legacyContext;
 
   /**
-   * @param cfg FormatConfig
+   * Last reserved word formatted before the token given to {@link #tokenOverride(Token)}, set
+   * right before it is called.
+   *
+   * @deprecated Formatters are shared between calls. Override {@link #tokenOverride(Token,
+   *     FormatContext)} and use {@link FormatContext#previousReservedToken()} instead.
+   */
+  @Deprecated protected Token previousReservedToken;
+
+  /**
+   * @param cfg FormatConfig used by {@link #format(String)}
    */
   public AbstractFormatter(FormatConfig cfg) {
     this.cfg = cfg;
-    this.indentation = new Indentation(cfg.indent);
-    this.inlineBlock = new InlineBlock(cfg.maxColumnLength);
-    this.params = cfg.params;
-    this.previousReservedToken = null;
-    this.index = 0;
+    this.legacyTokenOverride = overridesTokenOverride.get(this.getClass());
   }
 
+  /**
+   * Returns the tokenizer of {@link #dialectConfig()}, which is called once per formatter.
+   *
+   * @return Tokenizer
+   */
   public Tokenizer tokenizer() {
-    return new Tokenizer(this.dialectConfig());
+    Tokenizer tokenizer = this.tokenizer;
+    if (tokenizer == null) {
+      tokenizer = Tokenizer.of(this.dialectConfig());
+      this.tokenizer = tokenizer;
+    }
+    return tokenizer;
+  }
+
+  // Name of the formatter class, or of the formatter it extends
+  String dialectName() {
+    Class<?> type = this.getClass();
+    while (type.isAnonymousClass()) {
+      type = type.getSuperclass();
+    }
+    return type.getSimpleName();
   }
 
   /**
    * Reprocess and modify a token based on parsed context.
    *
    * @param token The token to modify
+   * @param ctx State of the current formatting call
    * @return token
    */
-  protected Token tokenOverride(Token token) {
+  protected Token tokenOverride(Token token, FormatContext ctx) {
     // subclasses can override this to modify tokens during formatting
+    if (!this.legacyTokenOverride) {
+      return token;
+    }
+    // One call at a time, as the fields it reads are shared
+    synchronized (this) {
+      this.legacyContext = ctx;
+      this.previousReservedToken = ctx.previousReservedToken;
+      try {
+        return this.tokenOverride(token);
+      } finally {
+        this.legacyContext = null;
+        this.previousReservedToken = null;
+      }
+    }
+  }
+
+  /**
+   * Reprocess and modify a token based on parsed context. Called by {@link #tokenOverride(Token,
+   * FormatContext)} unless a subclass overrides that, one call at a time.
+   *
+   * @param token The token to modify
+   * @return token
+   * @deprecated Override {@link #tokenOverride(Token, FormatContext)} instead, which formats
+   *     concurrent calls in parallel.
+   */
+  @Deprecated
+  protected Token tokenOverride(Token token) {
     return token;
   }
 
+  /**
+   * @return the token before the one given to {@link #tokenOverride(Token)}
+   * @deprecated Use {@link FormatContext#tokenLookBehind()}.
+   */
+  @Deprecated
+  protected Token tokenLookBehind() {
+    return this.legacyContext().tokenLookBehind();
+  }
+
+  /**
+   * @param n distance from the token given to {@link #tokenOverride(Token)}
+   * @return the n-th token before it
+   * @deprecated Use {@link FormatContext#tokenLookBehind(int)}.
+   */
+  @Deprecated
+  protected Token tokenLookBehind(int n) {
+    return this.legacyContext().tokenLookBehind(n);
+  }
+
+  /**
+   * @return the token after the one given to {@link #tokenOverride(Token)}
+   * @deprecated Use {@link FormatContext#tokenLookAhead()}.
+   */
+  @Deprecated
+  protected Token tokenLookAhead() {
+    return this.legacyContext().tokenLookAhead();
+  }
+
+  /**
+   * @param n distance from the token given to {@link #tokenOverride(Token)}
+   * @return the n-th token after it
+   * @deprecated Use {@link FormatContext#tokenLookAhead(int)}.
+   */
+  @Deprecated
+  protected Token tokenLookAhead(int n) {
+    return this.legacyContext().tokenLookAhead(n);
+  }
+
+  private FormatContext legacyContext() {
+    FormatContext ctx = this.legacyContext;
+    if (ctx == null || !Thread.holdsLock(this)) {
+      throw new IllegalStateException("Tokens can only be looked up from tokenOverride(Token)");
+    }
+    return ctx;
+  }
+
   /**
    * Formats whitespaces in a SQL string to make it easier to read.
    *
@@ -50,93 +182,441 @@ public abstract class AbstractFormatter implements DialectConfigurator {
    * @return formatted query
    */
   public String format(String query) {
-    this.tokens = this.tokenizer().tokenize(query);
-    String formattedQuery = this.getFormattedQueryFromTokens();
+    return this.format(query, this.cfg);
+  }
+
+  /**
+   * Formats whitespaces in a SQL string to make it easier to read.
+   *
+   * @param query The SQL query string
+   * @param cfg FormatConfig
+   * @return formatted query
+   */
+  public String format(String query, FormatConfig cfg) {
+    return this.format(query, cfg, null);
+  }
+
+  /**
+   * Formats like {@link #format(String, FormatConfig)}, reporting the time spent and the tokens
+   * seen to the given metrics.
+   *
+   * @param query The SQL query string
+   * @param cfg FormatConfig
+   * @param metrics Metrics to record the call to, or null to measure nothing
+   * @return formatted query
+   */
+  public String format(String query, FormatConfig cfg, FormatMetrics metrics) {
+    return this.output(query, cfg, metrics).toString();
+  }
+
+  /**
+   * Formats like {@link #format(String, FormatConfig, FormatMetrics)}, appending the output to the
+   * given destination without making a String of it. Writers, StringBuilders and CharBuffers are
+   * given the chars straight from the formatting buffer. The query is read as a String, which for
+   * a String query is the query itself.
+   *
+   * <p>Nothing is appended when the call throws.
+   *
+   * @param query The SQL query
+   * @param out Destination of the formatted query. It is not flushed or closed.
+   * @param cfg FormatConfig
+   * @param metrics Metrics to record the call to, or null to measure nothing
+   * @throws IOException If appending fails
+   * @throws BufferOverflowException If the destination is a CharBuffer without room for
+   *     the output
+   */
+  public void format(CharSequence query, Appendable out, FormatConfig cfg, FormatMetrics metrics)
+      throws IOException {
+    CharSequence output = this.output(query.toString(), cfg, metrics);
+    QueryWriter.append(output, 0, output.length(), out);
+  }
 
-    return formattedQuery.trim();
+  /**
+   * Formats like {@link #format(String, FormatConfig, FormatMetrics)}, encoding the output as UTF-8
+   * into the given buffer from its position without making a String of it. Unpaired surrogates
+   * are written as '?', like {@link String#getBytes(java.nio.charset.Charset)} does.
+   *
+   * @param query The SQL query
+   * @param out Destination of the formatted query, advanced past the bytes written
+   * @param cfg FormatConfig
+   * @param metrics Metrics to record the call to, or null to measure nothing
+   * @throws BufferOverflowException If the output does not fit in the buffer, in which case its
+   *     position is left as it was
+   */
+  public void format(CharSequence query, ByteBuffer out, FormatConfig cfg, FormatMetrics metrics) {
+    CharSequence output = this.output(query.toString(), cfg, metrics);
+    CharsetEncoder encoder =
+        StandardCharsets.UTF_8
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    int position = out.position();
+    CoderResult result = encoder.encode(CharBuffer.wrap(output), out, true);
+    if (!result.isOverflow()) {
+      result = encoder.flush(out);
+    }
+    if (result.isOverflow()) {
+      out.position(position);
+      throw new BufferOverflowException();
+    }
   }
 
-  private String getFormattedQueryFromTokens() {
-    String formattedQuery = "";
+  // Output of a call, or the query itself when it went over a limit and is returned unchanged
+  private CharSequence output(String query, FormatConfig cfg, FormatMetrics metrics) {
+    if (cfg.limits == null) {
+      return this.format(query, cfg, metrics, null);
+    }
+    try {
+      return this.format(query, cfg, metrics, Budget.start(cfg.limits, query));
+    } catch (FormatLimitExceededException e) {
+      return cfg.limits.exceeded(query, e);
+    }
+  }
 
-    int _index = -1;
-    for (Token token : this.tokens) {
-      this.index = ++_index;
+  StringBuilder format(String query, FormatConfig cfg, FormatMetrics metrics, Budget budget) {
+    Tokenizer tokenizer = this.tokenizer();
+    long start = metrics == null ? 0 : System.nanoTime();
+    Object tokenizeEvent = FormatEvents.beginTokenize();
+    TokenStream tokens =
+        tokenizer.scan(query, new TokenStream(query), tokenizer.matchers(), budget);
+    FormatEvents.endTokenize(tokenizeEvent, this, tokens);
+    long tokenizeNanos = metrics == null ? 0 : System.nanoTime() - start;
+    return this.format(tokenizer, tokens, cfg, metrics, tokenizeNanos, budget);
+  }
 
-      token = this.tokenOverride(token);
+  /**
+   * Breaks a SQL query into tokens once, to format it under several FormatConfigs with {@link
+   * #format(TokenizedQuery, FormatConfig)}.
+   *
+   * @param query The SQL query string
+   * @return tokens of the query
+   */
+  public TokenizedQuery tokenize(String query) {
+    Tokenizer tokenizer = this.tokenizer();
+    Object tokenizeEvent = FormatEvents.beginTokenize();
+    TokenStream tokens = tokenizer.scan(query);
+    FormatEvents.endTokenize(tokenizeEvent, this, tokens);
+    return new TokenizedQuery(this, tokenizer, tokens);
+  }
+
+  /**
+   * Formats a query tokenized by {@link #tokenize(String)}. The result is the same as {@link
+   * #format(String, FormatConfig)} on the query.
+   *
+   * @param query tokens of the query
+   * @param cfg FormatConfig
+   * @return formatted query
+   * @throws IllegalArgumentException If the query was tokenized by another formatter
+   */
+  public String format(TokenizedQuery query, FormatConfig cfg) {
+    return this.format(query, cfg, null);
+  }
+
+  /**
+   * Formats like {@link #format(TokenizedQuery, FormatConfig)}, reporting the call to the given
+   * metrics with no time spent tokenizing.
+   *
+   * @param query tokens of the query
+   * @param cfg FormatConfig
+   * @param metrics Metrics to record the call to, or null to measure nothing
+   * @return formatted query
+   * @throws IllegalArgumentException If the query was tokenized by another formatter
+   */
+  public String format(TokenizedQuery query, FormatConfig cfg, FormatMetrics metrics) {
+    if (query.formatter != this) {
+      throw new IllegalArgumentException("Query was tokenized by another formatter");
+    }
+    if (cfg.limits == null) {
+      return this.format(query.tokenizer, query.tokens, cfg, metrics, 0, null).toString();
+    }
+    try {
+      Budget budget = Budget.start(cfg.limits, query.query());
+      budget.checkTokens(query.size());
+      return this.format(query.tokenizer, query.tokens, cfg, metrics, 0, budget).toString();
+    } catch (FormatLimitExceededException e) {
+      return cfg.limits.exceeded(query.query(), e);
+    }
+  }
+
+  // Formats or minifies the tokens into a buffer holding the final output
+  private StringBuilder format(
+      Tokenizer tokenizer,
+      TokenStream tokens,
+      FormatConfig cfg,
+      FormatMetrics metrics,
+      long tokenizeNanos,
+      Budget budget) {
+    long start = metrics == null ? 0 : System.nanoTime();
+    StringBuilder result;
+    int inlineBlocks = 0;
+    Object formatEvent = FormatEvents.beginFormat();
+    if (cfg.minify) {
+      result = new StringBuilder(tokens.sourceLength());
+      new Minifier(tokenizer, cfg, result).write(tokens);
+    } else {
+      FormatContext ctx = new FormatContext(cfg, tokens);
+      ctx.budget = budget;
+      this.formatTokens(ctx);
+      result = trim(ctx.query);
+      inlineBlocks = ctx.inlineBlock.started();
+    }
+    FormatEvents.endFormat(formatEvent, this, tokens);
+    if (metrics != null) {
+      metrics.record(
+          new FormatSample(
+              tokens.sourceLength(),
+              result.length(),
+              tokenizeNanos,
+              System.nanoTime() - start,
+              FormatSample.countTokens(tokens),
+              inlineBlocks,
+              false));
+    }
+    return result;
+  }
+
+  // Same as String.trim on the buffer, in place
+  private static StringBuilder trim(StringBuilder query) {
+    int end = query.length();
+    while (end > 0 && query.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    query.setLength(end);
+    int start = 0;
+    while (start < end && query.charAt(start) <= ' ') {
+      start++;
+    }
+    return query.delete(0, start);
+  }
+
+  /**
+   * Formats a SQL script read from a stream, writing the output as it is produced. The result is
+   * the same as {@link #format(String, FormatConfig)} on the whole script.
+   *
+   * <p>The script is read and formatted one statement at a time, and the output of a statement is
+   * written once its closing ";" has been formatted, so memory use is bounded by the largest
+   * statement rather than the whole script. Neither stream is closed.
+   *
+   * <p>Limits apply to the whole script. As the output of the statements before has been written
+   * by the time one goes over a limit, the call throws, and limits that return the input unchanged
+   * are rejected.
+   *
+   * @param in SQL script
+   * @param out Destination of the formatted script
+   * @param cfg FormatConfig
+   * @throws IOException If reading or writing fails
+   * @throws FormatLimitExceededException If the script goes over a limit
+   * @throws IllegalArgumentException If the limits return the input unchanged
+   */
+  public void format(Reader in, Writer out, FormatConfig cfg) throws IOException {
+    Budget budget = null;
+    if (cfg.limits != null) {
+      if (cfg.limits.returnInput()) {
+        throw new IllegalArgumentException(
+            "Limits returning the input cannot apply to a script formatted as it is read");
+      }
+      budget = Budget.start(cfg.limits);
+    }
+    StatementReader statements = new StatementReader(in, this.tokenizer(), budget);
+    if (cfg.minify) {
+      this.minify(statements, out, cfg);
+      return;
+    }
+    QueryWriter writer = new QueryWriter(out);
+    FormatContext ctx = null;
+    TokenStream tokens;
+    while ((tokens = statements.next()) != null) {
+      if (ctx == null) {
+        ctx = new FormatContext(cfg, tokens);
+        ctx.budget = budget;
+      } else {
+        ctx.continueWith(tokens);
+      }
+      this.formatTokens(ctx);
+      writer.write(ctx.query);
+    }
+    out.flush();
+  }
+
+  /**
+   * Formats a multi-statement script, formatting its statements in parallel on the given pool. The
+   * result is the same as {@link #format(String, FormatConfig)}; short scripts are formatted
+   * serially.
+   *
+   * @param query The SQL script
+   * @param cfg FormatConfig
+   * @param pool Pool to format statements on
+   * @return formatted query
+   */
+  public String formatParallel(String query, FormatConfig cfg, ForkJoinPool pool) {
+    if (cfg.limits == null) {
+      return ParallelFormatter.format(this, query, cfg, pool, null);
+    }
+    try {
+      return ParallelFormatter.format(this, query, cfg, pool, Budget.start(cfg.limits, query));
+    } catch (FormatLimitExceededException e) {
+      return cfg.limits.exceeded(query, e);
+    }
+  }
+
+  /**
+   * Formats a SQL script like {@link #format(String, FormatConfig)}, keeping what is needed to
+   * format it again after an edit without formatting the whole script.
+   *
+   * @param query The SQL script
+   * @param cfg FormatConfig
+   * @return document holding the script and its formatted output
+   * @see FormattedDocument#edit(int, int, String)
+   */
+  public FormattedDocument formatDocument(String query, FormatConfig cfg) {
+    return FormattedDocument.of(this, query, cfg);
+  }
+
+  /**
+   * Formats a batch of independent queries, each like {@link #format(String, FormatConfig)}.
+   *
+   * <p>The tokenizer and formatting buffers are set up once and reused for every query, which
+   * saves most of the per-call overhead on short queries.
+   *
+   * @param queries The SQL queries
+   * @param cfg FormatConfig
+   * @return formatted queries, in the same order
+   */
+  public List<String> formatAll(List<String> queries, FormatConfig cfg) {
+    return BatchFormatter.formatAll(this, queries, cfg, null);
+  }
+
+  /**
+   * Formats a batch of independent queries like {@link #formatAll(List, FormatConfig)}, spreading
+   * them over the given pool. Results keep the order of the queries.
+   *
+   * @param queries The SQL queries
+   * @param cfg FormatConfig
+   * @param pool Pool to format queries on
+   * @return formatted queries, in the same order
+   */
+  public List<String> formatAll(List<String> queries, FormatConfig cfg, ForkJoinPool pool) {
+    return BatchFormatter.formatAll(this, queries, cfg, pool);
+  }
+
+  /**
+   * Formats a stream of independent queries lazily, reusing buffers like {@link #formatAll(List,
+   * FormatConfig)}. A parallel stream stays parallel, with buffers kept per worker thread.
+   *
+   * @param queries The SQL queries
+   * @param cfg FormatConfig
+   * @return stream of formatted queries
+   */
+  public Stream<String> formatAll(Stream<String> queries, FormatConfig cfg) {
+    return BatchFormatter.formatAll(this, queries, cfg);
+  }
+
+  private void minify(StatementReader statements, Writer out, FormatConfig cfg)
+      throws IOException {
+    StringBuilder buffer = new StringBuilder();
+    Minifier minifier = new Minifier(this.tokenizer(), cfg, buffer);
+    TokenStream tokens;
+    while ((tokens = statements.next()) != null) {
+      minifier.write(tokens);
+      // The end of the output may still be written again
+      int done = buffer.length() - minifier.pending();
+      out.append(buffer, 0, done);
+      buffer.delete(0, done);
+    }
+    out.append(buffer);
+    out.flush();
+  }
+
+  void formatTokens(FormatContext ctx) {
+    for (; ctx.index < ctx.tokens.size(); ctx.index++) {
+      if (ctx.budget != null) {
+        ctx.budget.step();
+      }
+      Token token = this.tokenOverride(ctx.tokens.get(ctx.index), ctx);
 
       if (token.type == TokenTypes.LINE_COMMENT) {
-        formattedQuery = this.formatLineComment(token, formattedQuery);
+        this.formatLineComment(token, ctx);
       } else if (token.type == TokenTypes.BLOCK_COMMENT) {
-        formattedQuery = this.formatBlockComment(token, formattedQuery);
+        this.formatBlockComment(token, ctx);
       } else if (token.type == TokenTypes.RESERVED_TOP_LEVEL) {
-        formattedQuery = this.formatToplevelReservedWord(token, formattedQuery);
-        this.previousReservedToken = token;
+        this.formatToplevelReservedWord(token, ctx);
+        ctx.previousReservedToken = token;
       } else if (token.type == TokenTypes.RESERVED_TOP_LEVEL_NO_INDENT) {
-        formattedQuery = this.formatTopLevelReservedWordNoIndent(token, formattedQuery);
-        this.previousReservedToken = token;
+        this.formatTopLevelReservedWordNoIndent(token, ctx);
+        ctx.previousReservedToken = token;
       } else if (token.type == TokenTypes.RESERVED_NEWLINE) {
-        formattedQuery = this.formatNewlineReservedWord(token, formattedQuery);
-        this.previousReservedToken = token;
+        this.formatNewlineReservedWord(token, ctx);
+        ctx.previousReservedToken = token;
       } else if (token.type == TokenTypes.RESERVED) {
-        formattedQuery = this.formatWithSpaces(token, formattedQuery);
-        this.previousReservedToken = token;
+        this.formatWithSpaces(token, ctx);
+        ctx.previousReservedToken = token;
       } else if (token.type == TokenTypes.OPEN_PAREN) {
-        formattedQuery = this.formatOpeningParentheses(token, formattedQuery);
+        this.formatOpeningParentheses(token, ctx);
       } else if (token.type == TokenTypes.CLOSE_PAREN) {
-        formattedQuery = this.formatClosingParentheses(token, formattedQuery);
+        this.formatClosingParentheses(token, ctx);
       } else if (token.type == TokenTypes.PLACEHOLDER) {
-        formattedQuery = this.formatPlaceholder(token, formattedQuery);
+        this.formatPlaceholder(token, ctx);
       } else if (token.value.equals(",")) {
-        formattedQuery = this.formatComma(token, formattedQuery);
+        this.formatComma(token, ctx);
       } else if (token.value.equals(":")) {
-        formattedQuery = this.formatWithSpaceAfter(token, formattedQuery);
+        this.formatWithSpaceAfter(token, ctx);
       } else if (token.value.equals(".")) {
-        formattedQuery = this.formatWithoutSpaces(token, formattedQuery);
+        this.formatWithoutSpaces(token, ctx);
       } else if (token.value.equals(";")) {
-        formattedQuery = this.formatQuerySeparator(token, formattedQuery);
+        this.formatQuerySeparator(token, ctx);
       } else {
-        formattedQuery = this.formatWithSpaces(token, formattedQuery);
+        this.formatWithSpaces(token, ctx);
       }
     }
-
-    return formattedQuery;
   }
 
-  private String formatLineComment(Token token, String query) {
-    return this.addNewline(query + this.show(token));
+  private void formatLineComment(Token token, FormatContext ctx) {
+    ctx.query.append(this.show(token, ctx));
+    this.addNewline(ctx);
   }
 
-  private String formatBlockComment(Token token, String query) {
-    return this.addNewline(this.addNewline(query) + this.indentComment(token.value));
+  private void formatBlockComment(Token token, FormatContext ctx) {
+    this.addNewline(ctx);
+    this.indentComment(token.value, ctx);
+    this.addNewline(ctx);
   }
 
-  private String indentComment(String comment) {
-    return comment.replaceAll("\n", "\n" + this.indentation.getIndent());
+  private void indentComment(String comment, FormatContext ctx) {
+    String indent = ctx.indentation.getIndent();
+    for (int i = 0; i < comment.length(); i++) {
+      char c = comment.charAt(i);
+      ctx.query.append(c);
+      if (c == '\n') {
+        ctx.query.append(indent);
+      }
+    }
   }
 
-  private String formatTopLevelReservedWordNoIndent(Token token, String query) {
-    this.indentation.decreaseTopLevel();
-    query = this.addNewline(query) + this.equalizeWhitespace(this.show(token));
-    return this.addNewline(query);
+  private void formatTopLevelReservedWordNoIndent(Token token, FormatContext ctx) {
+    ctx.indentation.decreaseTopLevel();
+    this.addNewline(ctx);
+    ctx.query.append(this.equalizeWhitespace(this.show(token, ctx)));
+    this.addNewline(ctx);
   }
 
-  private String formatToplevelReservedWord(Token token, String query) {
-    this.indentation.decreaseTopLevel();
+  private void formatToplevelReservedWord(Token token, FormatContext ctx) {
+    ctx.indentation.decreaseTopLevel();
 
-    query = this.addNewline(query);
+    this.addNewline(ctx);
 
-    this.indentation.increaseToplevel();
+    ctx.indentation.increaseToplevel();
 
-    query += this.equalizeWhitespace(this.show(token));
-    return this.addNewline(query);
+    ctx.query.append(this.equalizeWhitespace(this.show(token, ctx)));
+    this.addNewline(ctx);
   }
 
-  private String formatNewlineReservedWord(Token token, String query) {
-    if (Token.isAnd(token) && Token.isBetween(this.tokenLookBehind(2))) {
-      return this.formatWithSpaces(token, query);
+  private void formatNewlineReservedWord(Token token, FormatContext ctx) {
+    if (Token.isAnd(token) && Token.isBetween(ctx.tokenLookBehind(2))) {
+      this.formatWithSpaces(token, ctx);
+      return;
     }
-    return this.addNewline(query) + this.equalizeWhitespace(this.show(token)) + " ";
+    this.addNewline(ctx);
+    ctx.query.append(this.equalizeWhitespace(this.show(token, ctx))).append(' ');
   }
 
   // Replace any sequence of whitespace characters with single space
@@ -152,82 +632,87 @@ public abstract class AbstractFormatter implements DialectConfigurator {
           TokenTypes.RESERVED_NEWLINE);
 
   // Opening parentheses increase the block indent level and start a new line
-  private String formatOpeningParentheses(Token token, String query) {
+  private void formatOpeningParentheses(Token token, FormatContext ctx) {
     // Take out the preceding space unless there was whitespace there in the original query
     // or another opening parens or line comment
     if (token.whitespaceBefore.isEmpty()
-        && !Optional.ofNullable(this.tokenLookBehind())
+        && !Optional.ofNullable(ctx.tokenLookBehind())
             .map(t -> preserveWhitespaceFor.contains(t.type))
             .orElse(false)) {
-      query = Util.trimSpacesEnd(query);
+      Util.trimSpacesEnd(ctx.query);
     }
-    query += this.show(token);
+    ctx.query.append(this.show(token, ctx));
 
-    this.inlineBlock.beginIfPossible(this.tokens, this.index);
+    ctx.inlineBlock.beginIfPossible(ctx.tokens, ctx.index);
 
-    if (!this.inlineBlock.isActive()) {
-      this.indentation.increaseBlockLevel();
-      if (!cfg.skipWhitespaceNearBlockParentheses) {
-        query = this.addNewline(query);
+    if (!ctx.inlineBlock.isActive()) {
+      ctx.indentation.increaseBlockLevel();
+      if (!ctx.cfg.skipWhitespaceNearBlockParentheses) {
+        this.addNewline(ctx);
       }
     }
-    return query;
   }
 
   // Closing parentheses decrease the block indent level
-  private String formatClosingParentheses(Token token, String query) {
-    if (this.inlineBlock.isActive()) {
-      this.inlineBlock.end();
-      return this.formatWithSpaceAfter(token, query);
+  private void formatClosingParentheses(Token token, FormatContext ctx) {
+    if (ctx.inlineBlock.isActive()) {
+      ctx.inlineBlock.end();
+      this.formatWithSpaceAfter(token, ctx);
     } else {
-      this.indentation.decreaseBlockLevel();
-      if (!cfg.skipWhitespaceNearBlockParentheses) {
-        return this.formatWithSpaces(token, this.addNewline(query));
+      ctx.indentation.decreaseBlockLevel();
+      if (!ctx.cfg.skipWhitespaceNearBlockParentheses) {
+        this.addNewline(ctx);
+        this.formatWithSpaces(token, ctx);
       } else {
-        return this.formatWithoutSpaces(token, query);
+        this.formatWithoutSpaces(token, ctx);
       }
     }
   }
 
-  private String formatPlaceholder(Token token, String query) {
-    return query + this.params.get(token) + " ";
+  private void formatPlaceholder(Token token, FormatContext ctx) {
+    ctx.query.append(ctx.param(token)).append(' ');
   }
 
   // Commas start a new line (unless within inline parentheses or SQL "LIMIT" clause)
-  private String formatComma(Token token, String query) {
-    query = Util.trimSpacesEnd(query) + this.show(token) + " ";
-
-    if (this.inlineBlock.isActive()) {
-      return query;
-    } else if (Token.isLimit(this.previousReservedToken)) {
-      return query;
+  private void formatComma(Token token, FormatContext ctx) {
+    Util.trimSpacesEnd(ctx.query);
+    ctx.query.append(this.show(token, ctx)).append(' ');
+
+    if (ctx.inlineBlock.isActive()) {
+      return;
+    } else if (Token.isLimit(ctx.previousReservedToken)) {
+      return;
     } else {
-      return this.addNewline(query);
+      this.addNewline(ctx);
     }
   }
 
-  private String formatWithSpaceAfter(Token token, String query) {
-    return Util.trimSpacesEnd(query) + this.show(token) + " ";
+  private void formatWithSpaceAfter(Token token, FormatContext ctx) {
+    Util.trimSpacesEnd(ctx.query);
+    ctx.query.append(this.show(token, ctx)).append(' ');
   }
 
-  private String formatWithoutSpaces(Token token, String query) {
-    return Util.trimSpacesEnd(query) + this.show(token);
+  private void formatWithoutSpaces(Token token, FormatContext ctx) {
+    Util.trimSpacesEnd(ctx.query);
+    ctx.query.append(this.show(token, ctx));
   }
 
-  private String formatWithSpaces(Token token, String query) {
-    return query + this.show(token) + " ";
+  private void formatWithSpaces(Token token, FormatContext ctx) {
+    ctx.query.append(this.show(token, ctx)).append(' ');
   }
 
-  private String formatQuerySeparator(Token token, String query) {
-    this.indentation.resetIndentation();
-    return Util.trimSpacesEnd(query)
-        + this.show(token)
-        + Util.repeat("\n", Optional.ofNullable(this.cfg.linesBetweenQueries).orElse(1));
+  private void formatQuerySeparator(Token token, FormatContext ctx) {
+    ctx.indentation.resetIndentation();
+    Util.trimSpacesEnd(ctx.query);
+    ctx.query.append(this.show(token, ctx));
+    for (int i = Optional.ofNullable(ctx.cfg.linesBetweenQueries).orElse(1); i > 0; i--) {
+      ctx.query.append('\n');
+    }
   }
 
   // Converts token to string (uppercasing it if needed)
-  private String show(Token token) {
-    if (this.cfg.uppercase
+  private String show(Token token, FormatContext ctx) {
+    if (ctx.cfg.uppercase
         && (token.type == TokenTypes.RESERVED
             || token.type == TokenTypes.RESERVED_TOP_LEVEL
             || token.type == TokenTypes.RESERVED_TOP_LEVEL_NO_INDENT
@@ -240,27 +725,12 @@ public abstract class AbstractFormatter implements DialectConfigurator {
     }
   }
 
-  private String addNewline(String query) {
-    query = Util.trimSpacesEnd(query);
-    if (!query.endsWith("\n")) {
-      query += "\n";
+  private void addNewline(FormatContext ctx) {
+    Util.trimSpacesEnd(ctx.query);
+    int length = ctx.query.length();
+    if (length == 0 || ctx.query.charAt(length - 1) != '\n') {
+      ctx.query.append('\n');
     }
-    return query + this.indentation.getIndent();
-  }
-
-  protected Token tokenLookBehind() {
-    return this.tokenLookBehind(1);
-  }
-
-  protected Token tokenLookBehind(int n) {
-    return this.tokens.get(this.index - n);
-  }
-
-  protected Token tokenLookAhead() {
-    return this.tokenLookAhead(1);
-  }
-
-  protected Token tokenLookAhead(int n) {
-    return this.tokens.get(this.index + n);
+    ctx.query.append(ctx.indentation.getIndent());
   }
 }
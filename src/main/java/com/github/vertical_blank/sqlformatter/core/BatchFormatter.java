@@ -0,0 +1,162 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Formats many independent queries with the same formatter and FormatConfig.
+ *
+ * <p>The tokenizer is looked up once per batch, and each worker keeps one {@link FormatContext},
+ * token stream and set of matchers that are reset between queries instead of being created for
+ * every one. Every query is formatted on its own, so the results are the same as calling {@link
+ * AbstractFormatter#format(String, FormatConfig)} for each.
+ */
+final class BatchFormatter {
+  // Each worker of a pool gets about this many chunks of a batch, to even out uneven queries
+  private static final int CHUNKS_PER_WORKER = 4;
+
+  private final AbstractFormatter formatter;
+  private final Tokenizer tokenizer;
+  private final FormatConfig cfg;
+  private final Tokenizer.Matchers matchers;
+  private final TokenStream tokens;
+  private FormatContext ctx;
+
+  private BatchFormatter(AbstractFormatter formatter, Tokenizer tokenizer, FormatConfig cfg) {
+    this.formatter = formatter;
+    this.tokenizer = tokenizer;
+    this.cfg = cfg;
+    this.matchers = tokenizer.matchers();
+    this.tokens = new TokenStream("");
+  }
+
+  private String format(String query) {
+    if (this.cfg.limits == null) {
+      return this.format(query, null);
+    }
+    try {
+      return this.format(query, Budget.start(this.cfg.limits, query));
+    } catch (FormatLimitExceededException e) {
+      return this.cfg.limits.exceeded(query, e);
+    }
+  }
+
+  private String format(String query, Budget budget) {
+    Object tokenizeEvent = FormatEvents.beginTokenize();
+    this.tokenizer.scan(query, this.tokens, this.matchers, budget);
+    FormatEvents.endTokenize(tokenizeEvent, this.formatter, this.tokens);
+    Object formatEvent = FormatEvents.beginFormat();
+    String result;
+    if (this.cfg.minify) {
+      StringBuilder out = new StringBuilder(query.length());
+      new Minifier(this.tokenizer, this.cfg, out).write(this.tokens);
+      result = out.toString();
+    } else {
+      if (this.ctx == null) {
+        this.ctx = new FormatContext(this.cfg, this.tokens);
+      } else {
+        this.ctx.reset(this.tokens);
+      }
+      this.ctx.budget = budget;
+      this.formatter.formatTokens(this.ctx);
+      result = trim(this.ctx.query);
+    }
+    FormatEvents.endFormat(formatEvent, this.formatter, this.tokens);
+    return result;
+  }
+
+  static List<String> formatAll(
+      AbstractFormatter formatter, List<String> queries, FormatConfig cfg, ForkJoinPool pool) {
+    Tokenizer tokenizer = formatter.tokenizer();
+    String[] results = queries.toArray(new String[0]);
+    if (pool == null || pool.getParallelism() < 2 || results.length < 2) {
+      formatRange(formatter, tokenizer, cfg, results, 0, results.length);
+    } else {
+      int chunk = Math.max(1, results.length / (pool.getParallelism() * CHUNKS_PER_WORKER));
+      pool.invoke(new Chunk(formatter, tokenizer, cfg, results, 0, results.length, chunk));
+    }
+    return Arrays.asList(results);
+  }
+
+  static Stream<String> formatAll(
+      AbstractFormatter formatter, Stream<String> queries, FormatConfig cfg) {
+    Tokenizer tokenizer = formatter.tokenizer();
+    // A sequential stream uses a single context, a parallel one a context per worker thread
+    ThreadLocal<BatchFormatter> batches =
+        ThreadLocal.withInitial(() -> new BatchFormatter(formatter, tokenizer, cfg));
+    return queries.map(query -> batches.get().format(query));
+  }
+
+  // Formats the queries in place
+  private static void formatRange(
+      AbstractFormatter formatter,
+      Tokenizer tokenizer,
+      FormatConfig cfg,
+      String[] queries,
+      int from,
+      int to) {
+    BatchFormatter batch = new BatchFormatter(formatter, tokenizer, cfg);
+    for (int i = from; i < to; i++) {
+      queries[i] = batch.format(queries[i]);
+    }
+  }
+
+  // Same as toString().trim(), copying the chars once
+  private static String trim(StringBuilder query) {
+    int start = 0;
+    int end = query.length();
+    while (start < end && query.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && query.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return query.substring(start, end);
+  }
+
+  private static final class Chunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final AbstractFormatter formatter;
+    private final Tokenizer tokenizer;
+    private final FormatConfig cfg;
+    private final String[] queries;
+    private final int from;
+    private final int to;
+    private final int chunk;
+
+    private Chunk(
+        AbstractFormatter formatter,
+        Tokenizer tokenizer,
+        FormatConfig cfg,
+        String[] queries,
+        int from,
+        int to,
+        int chunk) {
+      this.formatter = formatter;
+      this.tokenizer = tokenizer;
+      this.cfg = cfg;
+      this.queries = queries;
+      this.from = from;
+      this.to = to;
+      this.chunk = chunk;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.to - this.from <= this.chunk) {
+        formatRange(this.formatter, this.tokenizer, this.cfg, this.queries, this.from, this.to);
+      } else {
+        int mid = (this.from + this.to) >>> 1;
+        invokeAll(
+            new Chunk(
+                this.formatter, this.tokenizer, this.cfg, this.queries, this.from, mid, this.chunk),
+            new Chunk(
+                this.formatter, this.tokenizer, this.cfg, this.queries, mid, this.to, this.chunk));
+      }
+    }
+  }
+}
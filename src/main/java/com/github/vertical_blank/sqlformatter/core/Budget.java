@@ -0,0 +1,149 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import com.github.vertical_blank.sqlformatter.core.FormatLimitExceededException.Limit;
+
+/**
+ * What is left of the {@link FormatLimits} of a single call.
+ *
+ * <p>It is also a view of the query for the tokenizer's patterns to read, counting every char they
+ * look at. A pattern stuck on a long input then stops at the deadline like any other step, since
+ * matchers cannot be interrupted otherwise.
+ */
+final class Budget implements CharSequence {
+  // Steps between reads of the clock
+  private static final int CHECK_INTERVAL = 1024;
+
+  private final FormatLimits limits;
+  private final boolean timed;
+  private final long deadline;
+  // Text the patterns read through this view
+  private String query;
+  // Tokens of the statements of a script read before the current one
+  private long tokensBefore;
+  private int steps;
+
+  private Budget(FormatLimits limits, String query, long deadline) {
+    this.limits = limits;
+    this.query = query;
+    this.timed = limits.timeout() != null;
+    this.deadline = deadline;
+  }
+
+  /**
+   * Starts the budget of a call, checking the length of the query.
+   *
+   * @param limits limits of the call
+   * @param query the query
+   * @return budget
+   * @throws FormatLimitExceededException If the query is too long
+   */
+  static Budget start(FormatLimits limits, String query) {
+    Budget budget = start(limits);
+    budget.checkLength(query.length());
+    budget.query = query;
+    return budget;
+  }
+
+  /**
+   * Starts the budget of a call reading its query in pieces, whose length is checked with {@link
+   * #checkLength(long)} as they come.
+   *
+   * @param limits limits of the call
+   * @return budget
+   */
+  static Budget start(FormatLimits limits) {
+    long deadline = limits.timeout() != null ? System.nanoTime() + limits.timeout().toNanos() : 0;
+    return new Budget(limits, "", deadline);
+  }
+
+  /**
+   * Returns a budget with the same limits and deadline, to work on a piece of the query on another
+   * thread. Its tokens are counted apart.
+   *
+   * @param piece text the patterns read through the new budget
+   * @return budget
+   */
+  Budget fork(String piece) {
+    return new Budget(this.limits, piece, this.deadline);
+  }
+
+  /**
+   * Makes the patterns read another text through this view.
+   *
+   * @param text text to read
+   * @return this
+   */
+  CharSequence over(String text) {
+    this.query = text;
+    return this;
+  }
+
+  /**
+   * @param length length of the query read so far
+   * @throws FormatLimitExceededException If the query is too long
+   */
+  void checkLength(long length) {
+    if (length > this.limits.maxLength()) {
+      throw new FormatLimitExceededException(
+          Limit.LENGTH,
+          "Query length " + length + " exceeds the limit of " + this.limits.maxLength());
+    }
+  }
+
+  /**
+   * @param tokens number of tokens read so far, besides those of statements already done with
+   * @throws FormatLimitExceededException If there are too many tokens or time is up
+   */
+  void checkTokens(int tokens) {
+    if (this.tokensBefore + tokens > this.limits.maxTokens()) {
+      throw new FormatLimitExceededException(
+          Limit.TOKENS, "Query has more than " + this.limits.maxTokens() + " tokens");
+    }
+    this.step();
+  }
+
+  /**
+   * Counts the tokens of a statement done with, when a script is read one statement at a time.
+   *
+   * @param tokens number of tokens of the statement
+   */
+  void addTokens(int tokens) {
+    this.tokensBefore += tokens;
+  }
+
+  /**
+   * Counts a step of work, reading the clock every so often.
+   *
+   * @throws FormatLimitExceededException If time is up
+   */
+  void step() {
+    if (this.timed && ++this.steps == CHECK_INTERVAL) {
+      this.steps = 0;
+      if (System.nanoTime() - this.deadline > 0) {
+        throw new FormatLimitExceededException(
+            Limit.TIME, "Formatting took longer than " + this.limits.timeout());
+      }
+    }
+  }
+
+  @Override
+  public int length() {
+    return this.query.length();
+  }
+
+  @Override
+  public char charAt(int index) {
+    this.step();
+    return this.query.charAt(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return this.query.subSequence(start, end);
+  }
+
+  @Override
+  public String toString() {
+    return this.query;
+  }
+}
@@ -1,9 +1,16 @@
 package com.github.vertical_blank.sqlformatter.core;
 
-import com.github.vertical_blank.sqlformatter.core.util.Util;
 import java.util.Arrays;
 import java.util.List;
-
+import java.util.Objects;
+
+/**
+ * Immutable description of a SQL dialect. Two configs holding the same words and symbols are equal,
+ * so they can share a single compiled {@link Tokenizer}.
+ *
+ * <p>Configs derived with the withX and plusX methods share the lists they do not change with the
+ * config they come from, and plusX extends a list without copying it.
+ */
 public class DialectConfig {
   public final List<String> lineCommentTypes;
   public final List<String> reservedTopLevelWords;
@@ -18,6 +25,8 @@ public class DialectConfig {
   public final List<String> namedPlaceholderTypes;
   public final List<String> operators;
 
+  private int hash;
+
   DialectConfig(
       List<String> lineCommentTypes,
       List<String> reservedTopLevelWords,
@@ -31,18 +40,76 @@ public class DialectConfig {
       List<String> indexedPlaceholderTypes,
       List<String> namedPlaceholderTypes,
       List<String> operators) {
-    this.lineCommentTypes = Util.nullToEmpty(lineCommentTypes);
-    this.reservedTopLevelWords = Util.nullToEmpty(reservedTopLevelWords);
-    this.reservedTopLevelWordsNoIndent = Util.nullToEmpty(reservedTopLevelWordsNoIndent);
-    this.reservedNewlineWords = Util.nullToEmpty(reservedNewlineWords);
-    this.reservedWords = Util.nullToEmpty(reservedWords);
-    this.specialWordChars = Util.nullToEmpty(specialWordChars);
-    this.stringTypes = Util.nullToEmpty(stringTypes);
-    this.openParens = Util.nullToEmpty(openParens);
-    this.closeParens = Util.nullToEmpty(closeParens);
-    this.indexedPlaceholderTypes = Util.nullToEmpty(indexedPlaceholderTypes);
-    this.namedPlaceholderTypes = Util.nullToEmpty(namedPlaceholderTypes);
-    this.operators = Util.nullToEmpty(operators);
+    this.lineCommentTypes = freeze(lineCommentTypes);
+    this.reservedTopLevelWords = freeze(reservedTopLevelWords);
+    this.reservedTopLevelWordsNoIndent = freeze(reservedTopLevelWordsNoIndent);
+    this.reservedNewlineWords = freeze(reservedNewlineWords);
+    this.reservedWords = freeze(reservedWords);
+    this.specialWordChars = freeze(specialWordChars);
+    this.stringTypes = freeze(stringTypes);
+    this.openParens = freeze(openParens);
+    this.closeParens = freeze(closeParens);
+    this.indexedPlaceholderTypes = freeze(indexedPlaceholderTypes);
+    this.namedPlaceholderTypes = freeze(namedPlaceholderTypes);
+    this.operators = freeze(operators);
+  }
+
+  // Lists of another config are shared as they are, since they are frozen already
+  private static List<String> freeze(List<String> list) {
+    return FrozenList.of(list);
+  }
+
+  // Extends a list of this config, sharing it with the new one
+  private static List<String> plus(List<String> list, List<String> more) {
+    return ((FrozenList) list).plus(more);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof DialectConfig)) {
+      return false;
+    }
+    DialectConfig that = (DialectConfig) o;
+    return this.hashCode() == that.hashCode()
+        && this.lineCommentTypes.equals(that.lineCommentTypes)
+        && this.reservedTopLevelWords.equals(that.reservedTopLevelWords)
+        && this.reservedTopLevelWordsNoIndent.equals(that.reservedTopLevelWordsNoIndent)
+        && this.reservedNewlineWords.equals(that.reservedNewlineWords)
+        && this.reservedWords.equals(that.reservedWords)
+        && this.specialWordChars.equals(that.specialWordChars)
+        && this.stringTypes.equals(that.stringTypes)
+        && this.openParens.equals(that.openParens)
+        && this.closeParens.equals(that.closeParens)
+        && this.indexedPlaceholderTypes.equals(that.indexedPlaceholderTypes)
+        && this.namedPlaceholderTypes.equals(that.namedPlaceholderTypes)
+        && this.operators.equals(that.operators);
+  }
+
+  @Override
+  public int hashCode() {
+    // fields are immutable, so the hash is computed once like String#hashCode
+    int h = this.hash;
+    if (h == 0) {
+      h =
+          Objects.hash(
+              lineCommentTypes,
+              reservedTopLevelWords,
+              reservedTopLevelWordsNoIndent,
+              reservedNewlineWords,
+              reservedWords,
+              specialWordChars,
+              stringTypes,
+              openParens,
+              closeParens,
+              indexedPlaceholderTypes,
+              namedPlaceholderTypes,
+              operators);
+      this.hash = h;
+    }
+    return h;
   }
 
   public DialectConfig withLineCommentTypes(List<String> lineCommentTypes) {
@@ -55,7 +122,7 @@ public class DialectConfig {
 
   public DialectConfig plusLineCommentTypes(List<String> lineCommentTypes) {
     return this.toBuilder()
-        .lineCommentTypes(Util.concat(this.lineCommentTypes, lineCommentTypes))
+        .lineCommentTypes(plus(this.lineCommentTypes, lineCommentTypes))
         .build();
   }
 
@@ -69,7 +136,7 @@ public class DialectConfig {
 
   public DialectConfig plusReservedTopLevelWords(List<String> reservedTopLevelWords) {
     return this.toBuilder()
-        .reservedTopLevelWords(Util.concat(this.reservedTopLevelWords, reservedTopLevelWords))
+        .reservedTopLevelWords(plus(this.reservedTopLevelWords, reservedTopLevelWords))
         .build();
   }
 
@@ -83,7 +150,7 @@ public class DialectConfig {
 
   public DialectConfig plusReservedNewlineWords(List<String> reservedNewlineWords) {
     return this.toBuilder()
-        .reservedNewlineWords(Util.concat(this.reservedNewlineWords, reservedNewlineWords))
+        .reservedNewlineWords(plus(this.reservedNewlineWords, reservedNewlineWords))
         .build();
   }
 
@@ -100,7 +167,7 @@ public class DialectConfig {
       List<String> reservedTopLevelWordsNoIndent) {
     return this.toBuilder()
         .reservedTopLevelWordsNoIndent(
-            Util.concat(this.reservedTopLevelWordsNoIndent, reservedTopLevelWordsNoIndent))
+            plus(this.reservedTopLevelWordsNoIndent, reservedTopLevelWordsNoIndent))
         .build();
   }
 
@@ -113,7 +180,7 @@ public class DialectConfig {
   }
 
   public DialectConfig plusReservedWords(List<String> reservedWords) {
-    return this.toBuilder().reservedWords(Util.concat(this.reservedWords, reservedWords)).build();
+    return this.toBuilder().reservedWords(plus(this.reservedWords, reservedWords)).build();
   }
 
   public DialectConfig withSpecialWordChars(List<String> specialWordChars) {
@@ -126,7 +193,7 @@ public class DialectConfig {
 
   public DialectConfig plusSpecialWordChars(List<String> specialWordChars) {
     return this.toBuilder()
-        .specialWordChars(Util.concat(this.specialWordChars, specialWordChars))
+        .specialWordChars(plus(this.specialWordChars, specialWordChars))
         .build();
   }
 
@@ -139,7 +206,7 @@ public class DialectConfig {
   }
 
   public DialectConfig plusStringTypes(List<String> stringTypes) {
-    return this.toBuilder().stringTypes(Util.concat(this.stringTypes, stringTypes)).build();
+    return this.toBuilder().stringTypes(plus(this.stringTypes, stringTypes)).build();
   }
 
   public DialectConfig withOpenParens(List<String> openParens) {
@@ -151,7 +218,7 @@ public class DialectConfig {
   }
 
   public DialectConfig plusOpenParens(List<String> openParens) {
-    return this.toBuilder().openParens(Util.concat(this.openParens, openParens)).build();
+    return this.toBuilder().openParens(plus(this.openParens, openParens)).build();
   }
 
   public DialectConfig withCloseParens(List<String> closeParens) {
@@ -163,7 +230,7 @@ public class DialectConfig {
   }
 
   public DialectConfig plusCloseParens(List<String> closeParens) {
-    return this.toBuilder().closeParens(Util.concat(this.closeParens, closeParens)).build();
+    return this.toBuilder().closeParens(plus(this.closeParens, closeParens)).build();
   }
 
   public DialectConfig withIndexedPlaceholderTypes(List<String> indexedPlaceholderTypes) {
@@ -176,7 +243,7 @@ public class DialectConfig {
 
   public DialectConfig plusIndexedPlaceholderTypes(List<String> indexedPlaceholderTypes) {
     return this.toBuilder()
-        .indexedPlaceholderTypes(Util.concat(this.indexedPlaceholderTypes, indexedPlaceholderTypes))
+        .indexedPlaceholderTypes(plus(this.indexedPlaceholderTypes, indexedPlaceholderTypes))
         .build();
   }
 
@@ -190,7 +257,7 @@ public class DialectConfig {
 
   public DialectConfig plusNamedPlaceholderTypes(List<String> namedPlaceholderTypes) {
     return this.toBuilder()
-        .namedPlaceholderTypes(Util.concat(this.namedPlaceholderTypes, namedPlaceholderTypes))
+        .namedPlaceholderTypes(plus(this.namedPlaceholderTypes, namedPlaceholderTypes))
         .build();
   }
 
@@ -203,7 +270,7 @@ public class DialectConfig {
   }
 
   public DialectConfig plusOperators(List<String> operators) {
-    return this.toBuilder().operators(Util.concat(this.operators, operators)).build();
+    return this.toBuilder().operators(plus(this.operators, operators)).build();
   }
 
   public DialectConfigBuilder toBuilder() {
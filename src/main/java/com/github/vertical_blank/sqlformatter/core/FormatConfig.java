@@ -15,6 +15,9 @@ public class FormatConfig {
   public final boolean uppercase;
   public final Integer linesBetweenQueries;
   public final boolean skipWhitespaceNearBlockParentheses;
+  public final boolean minify;
+  public final boolean stripComments;
+  public final FormatLimits limits;
 
   FormatConfig(
       String indent,
@@ -22,13 +25,19 @@ public class FormatConfig {
       Params params,
       boolean uppercase,
       Integer linesBetweenQueries,
-      boolean skipWhitespaceNearBlockParentheses) {
+      boolean skipWhitespaceNearBlockParentheses,
+      boolean minify,
+      boolean stripComments,
+      FormatLimits limits) {
     this.indent = indent;
     this.maxColumnLength = maxColumnLength;
     this.params = params == null ? Params.EMPTY : params;
     this.uppercase = uppercase;
     this.linesBetweenQueries = linesBetweenQueries;
     this.skipWhitespaceNearBlockParentheses = skipWhitespaceNearBlockParentheses;
+    this.minify = minify;
+    this.stripComments = stripComments;
+    this.limits = limits;
   }
 
   /**
@@ -48,6 +57,9 @@ public class FormatConfig {
     private boolean uppercase;
     private Integer linesBetweenQueries;
     private boolean skipWhitespaceNearBlockParentheses;
+    private boolean minify;
+    private boolean stripComments;
+    private FormatLimits limits;
 
     FormatConfigBuilder() {}
 
@@ -123,6 +135,37 @@ public class FormatConfig {
       return this;
     }
 
+    /**
+     * @param minify Removes all whitespace that is not needed instead of formatting. Keywords keep
+     *     their case and placeholders are not replaced, and formatting the result gives the same
+     *     output as formatting the original query
+     * @return This
+     */
+    public FormatConfigBuilder minify(boolean minify) {
+      this.minify = minify;
+      return this;
+    }
+
+    /**
+     * @param stripComments Removes comments when minifying, except optimizer hints starting with
+     *     {@code /*+} and MySQL's {@code /*!} comments
+     * @return This
+     */
+    public FormatConfigBuilder stripComments(boolean stripComments) {
+      this.stripComments = stripComments;
+      return this;
+    }
+
+    /**
+     * @param limits Limits on the length, tokens, indentation depth and time of each call, for
+     *     formatting untrusted queries; none by default
+     * @return This
+     */
+    public FormatConfigBuilder limits(FormatLimits limits) {
+      this.limits = limits;
+      return this;
+    }
+
     /**
      * Returns an instance of FormatConfig created from the fields set on this builder.
      *
@@ -135,7 +178,10 @@ public class FormatConfig {
           this.params,
           this.uppercase,
           this.linesBetweenQueries,
-          this.skipWhitespaceNearBlockParentheses);
+          this.skipWhitespaceNearBlockParentheses,
+          this.minify,
+          this.stripComments,
+          this.limits);
     }
   }
 }
@@ -0,0 +1,144 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * State of a single formatting call.
+ *
+ * <p>Formatters are immutable and shared between threads, so everything that changes while walking
+ * through the tokens of one query lives here. A context is created per call and never escapes it.
+ */
+public final class FormatContext {
+  // Formatting never looks further back than this many tokens
+  static final int LOOKBEHIND = 2;
+
+  final FormatConfig cfg;
+  final Indentation indentation;
+  final InlineBlock inlineBlock;
+  final StringBuilder query;
+  TokenStream tokens;
+  int index;
+  // Last tokens before the current statement, most recent last, for lookbehind across statements
+  final Token[] before = new Token[LOOKBEHIND];
+  Token previousReservedToken;
+  int placeholderIndex;
+  // Limits of the call, counting a step for every token, or null
+  Budget budget;
+
+  FormatContext(FormatConfig cfg, TokenStream tokens) {
+    this.cfg = cfg;
+    this.indentation =
+        new Indentation(cfg.indent, cfg.limits == null ? Integer.MAX_VALUE : cfg.limits.maxDepth());
+    this.inlineBlock = new InlineBlock(cfg.maxColumnLength);
+    this.query = new StringBuilder();
+    this.tokens = tokens;
+    this.index = 0;
+    this.previousReservedToken = null;
+    this.placeholderIndex = 0;
+  }
+
+  // Continues with the tokens of the next statement, keeping the last ones of the previous
+  // statements so that lookbehind works across the boundary
+  void continueWith(TokenStream next) {
+    int size = this.tokens.size();
+    for (int n = LOOKBEHIND; n > 0; n--) {
+      this.before[LOOKBEHIND - n] = this.token(size - n);
+    }
+    this.tokens = next;
+    this.index = 0;
+  }
+
+  // Starts over on the tokens of another query, keeping the buffers of this one
+  void reset(TokenStream tokens) {
+    this.indentation.resetIndentation();
+    this.inlineBlock.reset();
+    this.query.setLength(0);
+    this.tokens = tokens;
+    this.index = 0;
+    Arrays.fill(this.before, null);
+    this.previousReservedToken = null;
+    this.placeholderIndex = 0;
+  }
+
+  // Token at the given index of the current statement, reaching back into the previous ones for
+  // negative indexes. Tokens are built on demand, so the same index may yield equal copies.
+  Token token(int index) {
+    if (index >= 0) {
+      return this.tokens.get(index);
+    }
+    return index >= -LOOKBEHIND ? this.before[LOOKBEHIND + index] : null;
+  }
+
+  /**
+   * Returns the last reserved word formatted so far.
+   *
+   * @return token or null
+   */
+  public Token previousReservedToken() {
+    return this.previousReservedToken;
+  }
+
+  public Token tokenLookBehind() {
+    return this.tokenLookBehind(1);
+  }
+
+  public Token tokenLookBehind(int n) {
+    return this.token(this.index - n);
+  }
+
+  public Token tokenLookAhead() {
+    return this.tokenLookAhead(1);
+  }
+
+  public Token tokenLookAhead(int n) {
+    return this.token(this.index + n);
+  }
+
+  // Indexed placeholders take params in order of appearance
+  Object param(Token token) {
+    Object value = this.cfg.params.get(token, this.placeholderIndex);
+    if (token.key == null || token.key.isEmpty()) {
+      this.placeholderIndex++;
+    }
+    return value;
+  }
+
+  /**
+   * Returns what formatting a ";" appends to the output, which statements formatted apart are
+   * joined with.
+   *
+   * @param cfg FormatConfig
+   * @return separator
+   */
+  static String separator(FormatConfig cfg) {
+    StringBuilder separator = new StringBuilder(";");
+    int lines = cfg.linesBetweenQueries == null ? 1 : cfg.linesBetweenQueries;
+    for (int i = lines; i > 0; i--) {
+      separator.append('\n');
+    }
+    return separator.toString();
+  }
+
+  // Whether formatting ended the usual way, after a ";" with nothing left open
+  boolean endsStatement(String separator) {
+    int offset = this.query.length() - separator.length();
+    return this.indentation.isEmpty()
+        && !this.inlineBlock.isActive()
+        && offset >= 0
+        && this.query.indexOf(separator, offset) == offset;
+  }
+
+  // Whether formatting after either token goes the same way, as tokens are built on demand and
+  // are not the same instances
+  static boolean sameToken(Token a, Token b) {
+    return a == b
+        || (a != null
+            && b != null
+            && a.type == b.type
+            && a.value.equals(b.value)
+            && Objects.equals(a.regex, b.regex)
+            && Objects.equals(a.whitespaceBefore, b.whitespaceBefore)
+            && Objects.equals(a.key, b.key));
+  }
+}
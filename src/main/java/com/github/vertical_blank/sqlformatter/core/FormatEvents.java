@@ -0,0 +1,69 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+/**
+ * Java Flight Recorder events around tokenizing and formatting, for seeing slow calls next to GC
+ * and lock events in a recording.
+ *
+ * <p>The events are named {@code Tokenize} and {@code Format} in the package of this library, and
+ * carry the dialect, input length and token count. They are only created while a recording has
+ * them enabled. The library targets Java 8, where jdk.jfr may be missing, so the event classes are
+ * kept in JfrEvents, which is compiled for Java 11 from src/main/java11 and looked up by name.
+ * Where it cannot be loaded, every method here does nothing.
+ */
+final class FormatEvents {
+  // Null when the events cannot be recorded
+  private static final Recorder RECORDER = recorder();
+
+  private FormatEvents() {}
+
+  /** Creates and commits the events, implemented by JfrEvents. */
+  interface Recorder {
+    Object beginTokenize();
+
+    Object beginFormat();
+
+    void end(Object event, String dialect, int inputLength, int tokenCount);
+  }
+
+  private static Recorder recorder() {
+    try {
+      return (Recorder)
+          Class.forName("com.github.vertical_blank.sqlformatter.core.JfrEvents")
+              .getDeclaredConstructor()
+              .newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      // Running on Java 8, or without the jdk.jfr module
+      return null;
+    }
+  }
+
+  /**
+   * Starts timing a tokenize call.
+   *
+   * @return event to pass to {@link #endTokenize}, or null when not recording
+   */
+  static Object beginTokenize() {
+    return RECORDER == null ? null : RECORDER.beginTokenize();
+  }
+
+  static void endTokenize(Object event, AbstractFormatter formatter, TokenStream tokens) {
+    if (event != null) {
+      RECORDER.end(event, formatter.dialectName(), tokens.sourceLength(), tokens.size());
+    }
+  }
+
+  /**
+   * Starts timing the formatting of tokens.
+   *
+   * @return event to pass to {@link #endFormat}, or null when not recording
+   */
+  static Object beginFormat() {
+    return RECORDER == null ? null : RECORDER.beginFormat();
+  }
+
+  static void endFormat(Object event, AbstractFormatter formatter, TokenStream tokens) {
+    if (event != null) {
+      RECORDER.end(event, formatter.dialectName(), tokens.sourceLength(), tokens.size());
+    }
+  }
+}
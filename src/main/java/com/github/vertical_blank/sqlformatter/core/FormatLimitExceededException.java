@@ -0,0 +1,32 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+/** Thrown when formatting a query goes over one of its {@link FormatLimits}. */
+public class FormatLimitExceededException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  /** The limits of {@link FormatLimits}. */
+  public enum Limit {
+    /** {@link FormatLimits#maxLength()} */
+    LENGTH,
+    /** {@link FormatLimits#maxTokens()} */
+    TOKENS,
+    /** {@link FormatLimits#maxDepth()} */
+    DEPTH,
+    /** {@link FormatLimits#timeout()} */
+    TIME
+  }
+
+  private final Limit limit;
+
+  FormatLimitExceededException(Limit limit, String message) {
+    super(message);
+    this.limit = limit;
+  }
+
+  /**
+   * @return The limit that was exceeded
+   */
+  public Limit limit() {
+    return this.limit;
+  }
+}
@@ -0,0 +1,190 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Limits on the work a single formatting call may do, for formatting queries from untrusted
+ * sources. Set with {@link FormatConfig.FormatConfigBuilder#limits(FormatLimits)}.
+ *
+ * <p>The length of the query is checked before tokenizing, and the token count as tokens are
+ * read. The indentation depth is checked as blocks and top-level words open. The time limit is
+ * checked while tokenizing, where patterns read the query through a view that counts the chars
+ * they look at, and while formatting, so a single call stops soon after its deadline.
+ *
+ * <p>A call that goes over a limit throws {@link FormatLimitExceededException}, or returns the
+ * query unchanged when {@link FormatLimitsBuilder#returnInput(boolean)} is set. Limits apply to
+ * every way of formatting, a script read from a stream, formatted in parallel or kept as a
+ * document being limited as a whole.
+ */
+public final class FormatLimits {
+  private final int maxLength;
+  private final int maxTokens;
+  private final int maxDepth;
+  private final Duration timeout;
+  private final boolean returnInput;
+
+  private FormatLimits(
+      int maxLength, int maxTokens, int maxDepth, Duration timeout, boolean returnInput) {
+    this.maxLength = maxLength;
+    this.maxTokens = maxTokens;
+    this.maxDepth = maxDepth;
+    this.timeout = timeout;
+    this.returnInput = returnInput;
+  }
+
+  /**
+   * Returns a new empty Builder, with no limits set.
+   *
+   * @return A new empty Builder
+   */
+  public static FormatLimitsBuilder builder() {
+    return new FormatLimitsBuilder();
+  }
+
+  /**
+   * @return Maximum length of a query
+   */
+  public int maxLength() {
+    return this.maxLength;
+  }
+
+  /**
+   * @return Maximum number of tokens in a query
+   */
+  public int maxTokens() {
+    return this.maxTokens;
+  }
+
+  /**
+   * @return Maximum number of indentation levels open at once
+   */
+  public int maxDepth() {
+    return this.maxDepth;
+  }
+
+  /**
+   * @return Maximum time for a call, or null when unlimited
+   */
+  public Duration timeout() {
+    return this.timeout;
+  }
+
+  /**
+   * @return Whether a call going over a limit returns the query unchanged instead of throwing
+   */
+  public boolean returnInput() {
+    return this.returnInput;
+  }
+
+  // Result of a call that went over a limit
+  String exceeded(String query, FormatLimitExceededException e) {
+    if (this.returnInput) {
+      return query;
+    }
+    throw e;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof FormatLimits)) {
+      return false;
+    }
+    FormatLimits that = (FormatLimits) o;
+    return this.maxLength == that.maxLength
+        && this.maxTokens == that.maxTokens
+        && this.maxDepth == that.maxDepth
+        && this.returnInput == that.returnInput
+        && Objects.equals(this.timeout, that.timeout);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        this.maxLength, this.maxTokens, this.maxDepth, this.timeout, this.returnInput);
+  }
+
+  /** FormatLimitsBuilder */
+  public static class FormatLimitsBuilder {
+    private int maxLength = Integer.MAX_VALUE;
+    private int maxTokens = Integer.MAX_VALUE;
+    private int maxDepth = Integer.MAX_VALUE;
+    private Duration timeout;
+    private boolean returnInput;
+
+    FormatLimitsBuilder() {}
+
+    /**
+     * @param maxLength Maximum length of a query, unlimited by default
+     * @return This
+     */
+    public FormatLimitsBuilder maxLength(int maxLength) {
+      this.maxLength = maxLength;
+      return this;
+    }
+
+    /**
+     * @param maxTokens Maximum number of tokens in a query, unlimited by default
+     * @return This
+     */
+    public FormatLimitsBuilder maxTokens(int maxTokens) {
+      this.maxTokens = maxTokens;
+      return this;
+    }
+
+    /**
+     * @param maxDepth Maximum number of indentation levels open at once, from parentheses and
+     *     top-level words, unlimited by default
+     * @return This
+     */
+    public FormatLimitsBuilder maxDepth(int maxDepth) {
+      this.maxDepth = maxDepth;
+      return this;
+    }
+
+    /**
+     * @param timeout Maximum time for a call, unlimited by default
+     * @return This
+     */
+    public FormatLimitsBuilder timeout(Duration timeout) {
+      this.timeout = timeout;
+      return this;
+    }
+
+    /**
+     * @param returnInput Returns the query unchanged instead of throwing {@link
+     *     FormatLimitExceededException} when a call goes over a limit. Formatting from a Reader
+     *     rejects it, as output is written before the end of the script is read.
+     * @return This
+     */
+    public FormatLimitsBuilder returnInput(boolean returnInput) {
+      this.returnInput = returnInput;
+      return this;
+    }
+
+    /**
+     * Returns an instance of FormatLimits created from the fields set on this builder.
+     *
+     * @return FormatLimits
+     */
+    public FormatLimits build() {
+      if (this.maxLength < 0) {
+        throw new IllegalArgumentException("maxLength must not be negative: " + this.maxLength);
+      }
+      if (this.maxTokens < 0) {
+        throw new IllegalArgumentException("maxTokens must not be negative: " + this.maxTokens);
+      }
+      if (this.maxDepth < 0) {
+        throw new IllegalArgumentException("maxDepth must not be negative: " + this.maxDepth);
+      }
+      if (this.timeout != null && this.timeout.isNegative()) {
+        throw new IllegalArgumentException("timeout must not be negative: " + this.timeout);
+      }
+      return new FormatLimits(
+          this.maxLength, this.maxTokens, this.maxDepth, this.timeout, this.returnInput);
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+/**
+ * Receives measurements of formatting calls, for connecting a metrics library or {@link
+ * FormatStatistics}.
+ *
+ * <p>Implementations are called on the formatting thread right after each call, so they should be
+ * thread-safe and quick. Formatters without metrics measure nothing.
+ */
+public interface FormatMetrics {
+
+  /**
+   * Called after a query has been formatted, or answered from a cache.
+   *
+   * @param sample Measurements of the call
+   */
+  void record(FormatSample sample);
+}
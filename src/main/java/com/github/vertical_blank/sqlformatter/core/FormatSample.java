@@ -0,0 +1,113 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+/** Measurements of a single formatting call, reported to {@link FormatMetrics}. */
+public final class FormatSample {
+  private final int inputLength;
+  private final int outputLength;
+  private final long tokenizeNanos;
+  private final long formatNanos;
+  private final int[] tokenCounts;
+  private final int tokenCount;
+  private final int inlineBlocks;
+  private final boolean cacheHit;
+
+  FormatSample(
+      int inputLength,
+      int outputLength,
+      long tokenizeNanos,
+      long formatNanos,
+      int[] tokenCounts,
+      int inlineBlocks,
+      boolean cacheHit) {
+    this.inputLength = inputLength;
+    this.outputLength = outputLength;
+    this.tokenizeNanos = tokenizeNanos;
+    this.formatNanos = formatNanos;
+    this.tokenCounts = tokenCounts;
+    int tokenCount = 0;
+    for (int count : tokenCounts) {
+      tokenCount += count;
+    }
+    this.tokenCount = tokenCount;
+    this.inlineBlocks = inlineBlocks;
+    this.cacheHit = cacheHit;
+  }
+
+  /**
+   * Returns a sample of a call answered from a cache, which measured nothing but the sizes.
+   *
+   * @param inputLength Length of the query
+   * @param outputLength Length of the cached result
+   * @return sample
+   */
+  public static FormatSample cacheHit(int inputLength, int outputLength) {
+    return new FormatSample(
+        inputLength, outputLength, 0, 0, new int[TokenTypes.values().length], 0, true);
+  }
+
+  // Counts the tokens of each type
+  static int[] countTokens(TokenStream tokens) {
+    int[] counts = new int[TokenTypes.values().length];
+    for (int i = 0; i < tokens.size(); i++) {
+      counts[tokens.type(i).ordinal()]++;
+    }
+    return counts;
+  }
+
+  /**
+   * @return Length of the query
+   */
+  public int inputLength() {
+    return this.inputLength;
+  }
+
+  /**
+   * @return Length of the formatted query
+   */
+  public int outputLength() {
+    return this.outputLength;
+  }
+
+  /**
+   * @return Time spent breaking the query into tokens, in nanoseconds
+   */
+  public long tokenizeNanos() {
+    return this.tokenizeNanos;
+  }
+
+  /**
+   * @return Time spent formatting the tokens, in nanoseconds
+   */
+  public long formatNanos() {
+    return this.formatNanos;
+  }
+
+  /**
+   * @return Number of tokens in the query
+   */
+  public int tokenCount() {
+    return this.tokenCount;
+  }
+
+  /**
+   * @param type Token type
+   * @return Number of tokens of the type in the query
+   */
+  public int tokenCount(TokenTypes type) {
+    return this.tokenCounts[type.ordinal()];
+  }
+
+  /**
+   * @return Number of parenthesized blocks kept on one line
+   */
+  public int inlineBlocks() {
+    return this.inlineBlocks;
+  }
+
+  /**
+   * @return Whether the result came from a {@code FormatCache} without formatting
+   */
+  public boolean cacheHit() {
+    return this.cacheHit;
+  }
+}
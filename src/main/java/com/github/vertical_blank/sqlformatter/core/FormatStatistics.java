@@ -0,0 +1,149 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link FormatMetrics} that adds up the samples of every call into counters and time histograms.
+ *
+ * <p>Histograms have a bucket per power of two nanoseconds: bucket {@code i} counts calls that took
+ * from {@code 2^i} up to {@code 2^(i+1)} nanoseconds, and bucket 0 also counts calls that took no
+ * time. Counters can be read while calls are being recorded.
+ */
+public final class FormatStatistics implements FormatMetrics {
+  private static final int BUCKETS = 64;
+
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder cacheHits = new LongAdder();
+  private final LongAdder inputChars = new LongAdder();
+  private final LongAdder outputChars = new LongAdder();
+  private final LongAdder inlineBlocks = new LongAdder();
+  private final LongAdder tokenizeNanos = new LongAdder();
+  private final LongAdder formatNanos = new LongAdder();
+  private final LongAdder[] tokens = adders(TokenTypes.values().length);
+  private final LongAdder[] tokenizeHistogram = adders(BUCKETS);
+  private final LongAdder[] formatHistogram = adders(BUCKETS);
+
+  @Override
+  public void record(FormatSample sample) {
+    this.calls.increment();
+    this.inputChars.add(sample.inputLength());
+    this.outputChars.add(sample.outputLength());
+    if (sample.cacheHit()) {
+      this.cacheHits.increment();
+      return;
+    }
+    this.inlineBlocks.add(sample.inlineBlocks());
+    for (TokenTypes type : TokenTypes.values()) {
+      int count = sample.tokenCount(type);
+      if (count > 0) {
+        this.tokens[type.ordinal()].add(count);
+      }
+    }
+    this.tokenizeNanos.add(sample.tokenizeNanos());
+    this.formatNanos.add(sample.formatNanos());
+    this.tokenizeHistogram[bucket(sample.tokenizeNanos())].increment();
+    this.formatHistogram[bucket(sample.formatNanos())].increment();
+  }
+
+  /**
+   * @return Number of calls recorded, including cache hits
+   */
+  public long calls() {
+    return this.calls.sum();
+  }
+
+  /**
+   * @return Number of calls answered from a cache
+   */
+  public long cacheHits() {
+    return this.cacheHits.sum();
+  }
+
+  /**
+   * @return Total length of the queries
+   */
+  public long inputChars() {
+    return this.inputChars.sum();
+  }
+
+  /**
+   * @return Total length of the results
+   */
+  public long outputChars() {
+    return this.outputChars.sum();
+  }
+
+  /**
+   * @return Number of parenthesized blocks kept on one line
+   */
+  public long inlineBlocks() {
+    return this.inlineBlocks.sum();
+  }
+
+  /**
+   * @return Number of tokens of formatted queries
+   */
+  public long tokens() {
+    long sum = 0;
+    for (LongAdder adder : this.tokens) {
+      sum += adder.sum();
+    }
+    return sum;
+  }
+
+  /**
+   * @param type Token type
+   * @return Number of tokens of the type in formatted queries
+   */
+  public long tokens(TokenTypes type) {
+    return this.tokens[type.ordinal()].sum();
+  }
+
+  /**
+   * @return Total time spent tokenizing, in nanoseconds
+   */
+  public long tokenizeNanos() {
+    return this.tokenizeNanos.sum();
+  }
+
+  /**
+   * @return Total time spent formatting tokens, in nanoseconds
+   */
+  public long formatNanos() {
+    return this.formatNanos.sum();
+  }
+
+  /**
+   * @return Number of calls per tokenizing time bucket
+   */
+  public long[] tokenizeHistogram() {
+    return sums(this.tokenizeHistogram);
+  }
+
+  /**
+   * @return Number of calls per formatting time bucket
+   */
+  public long[] formatHistogram() {
+    return sums(this.formatHistogram);
+  }
+
+  private static int bucket(long nanos) {
+    return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+  }
+
+  private static LongAdder[] adders(int size) {
+    LongAdder[] adders = new LongAdder[size];
+    for (int i = 0; i < size; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+
+  private static long[] sums(LongAdder[] adders) {
+    long[] sums = new long[adders.length];
+    for (int i = 0; i < adders.length; i++) {
+      sums[i] = adders[i].sum();
+    }
+    return sums;
+  }
+}
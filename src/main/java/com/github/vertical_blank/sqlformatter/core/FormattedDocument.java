@@ -0,0 +1,384 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.util.Arrays;
+
+/**
+ * A SQL script with its formatted output, which can be edited without formatting the whole script
+ * again.
+ *
+ * <p>The script is kept as statements, each ending at a ";" token, with its tokens, output and the
+ * state formatting leaves behind. Tokenizing starts over after every ";" token, and a statement is
+ * tokenized from a stretch of text growing from its start until the tokens up to its ";" no longer
+ * depend on what follows. So an edit only damages the statements whose stretch it touches: they
+ * are tokenized again from the start of the first one, up to the first ";" that ends a statement
+ * where the old text had a boundary too. The statements
+ * after it keep their tokens, and keep their output as soon as formatting reaches them in the same
+ * state as before. A statement that leaves an unusual state, like an unclosed block, is joined
+ * with the next one.
+ *
+ * <p>Dialects where ";" is not always a token of its own, and minifying, format the whole script on
+ * every edit. Limits apply to the whole script on every call, counting the tokens of the statements
+ * kept as well. A document whose script went over a limit, and is returned unchanged, is formatted
+ * whole again on the next edit. Instances are immutable and can be shared between threads.
+ */
+public final class FormattedDocument {
+  // Length of the first stretch of text read for a statement, doubled until it holds the statement
+  private static final int SCAN_LENGTH = 256;
+
+  private final AbstractFormatter formatter;
+  private final Tokenizer tokenizer;
+  private final FormatConfig cfg;
+  // What formatting a ";" appends to the output
+  private final String separator;
+  private final String text;
+  // Statements in order, and the offset in the text each one ends at. There are none when the
+  // script is formatted whole.
+  private final Statement[] statements;
+  private final int[] ends;
+  private String formatted;
+
+  private FormattedDocument(
+      AbstractFormatter formatter,
+      Tokenizer tokenizer,
+      FormatConfig cfg,
+      String text,
+      Statement[] statements,
+      int[] ends) {
+    this.formatter = formatter;
+    this.tokenizer = tokenizer;
+    this.cfg = cfg;
+    this.separator = FormatContext.separator(cfg);
+    this.text = text;
+    this.statements = statements;
+    this.ends = ends;
+  }
+
+  static FormattedDocument of(AbstractFormatter formatter, String text, FormatConfig cfg) {
+    Tokenizer tokenizer = formatter.tokenizer();
+    FormattedDocument empty =
+        new FormattedDocument(formatter, tokenizer, cfg, "", new Statement[0], new int[0]);
+    if (!empty.isSplit()) {
+      return empty.whole(text);
+    }
+    return empty.formatEdited(text, Integer.MAX_VALUE, 0);
+  }
+
+  /**
+   * @return The script
+   */
+  public String text() {
+    return this.text;
+  }
+
+  /**
+   * Returns the formatted script, the same as formatting {@link #text()} at once.
+   *
+   * @return formatted script
+   */
+  public String formatted() {
+    String formatted = this.formatted;
+    if (formatted == null) {
+      int length = 0;
+      for (Statement statement : this.statements) {
+        length += statement.output.length();
+      }
+      StringBuilder sb = new StringBuilder(length);
+      for (Statement statement : this.statements) {
+        sb.append(statement.output);
+      }
+      formatted = sb.toString().trim();
+      this.formatted = formatted;
+    }
+    return formatted;
+  }
+
+  /**
+   * Applies an edit to the script, formatting again only the statements it affects.
+   *
+   * @param offset Offset in the script where the edit starts
+   * @param removed Number of chars removed at the offset
+   * @param inserted Text inserted at the offset
+   * @return the edited document
+   */
+  public FormattedDocument edit(int offset, int removed, String inserted) {
+    if (offset < 0 || removed < 0 || offset + removed > this.text.length()) {
+      throw new IndexOutOfBoundsException(
+          "offset: " + offset + ", removed: " + removed + ", length: " + this.text.length());
+    }
+    String text =
+        this.text.substring(0, offset) + inserted + this.text.substring(offset + removed);
+    if (this.statements.length == 0) {
+      return of(this.formatter, text, this.cfg);
+    }
+    // The first statement touched; an edit at a boundary belongs to the statement after it
+    int first = Arrays.binarySearch(this.ends, offset);
+    first = first < 0 ? -first - 1 : first + 1;
+    first = Math.min(first, this.statements.length - 1);
+    // Statements before it may have read up to the edit to find their end
+    for (int i = first - 1; i >= 0; i--) {
+      if (this.ends[i] + this.statements[i].readPast > offset) {
+        first = i;
+      }
+    }
+    return this.formatEdited(text, offset + removed, first);
+  }
+
+  // Formats the statements of an edited text from the first one the edit touches, within the
+  // limits of the config
+  private FormattedDocument formatEdited(String text, int editEnd, int first) {
+    if (this.cfg.limits == null) {
+      return this.formatEdited(text, editEnd, first, null);
+    }
+    try {
+      return this.formatEdited(text, editEnd, first, Budget.start(this.cfg.limits, text));
+    } catch (FormatLimitExceededException e) {
+      FormattedDocument document = this.unsplit(text);
+      document.formatted = this.cfg.limits.exceeded(text, e);
+      return document;
+    }
+  }
+
+  private FormattedDocument formatEdited(String text, int editEnd, int first, Budget budget) {
+    Builder builder = new Builder(text, editEnd, first, budget);
+    int start = first == 0 ? 0 : this.ends[first - 1];
+    State state = first == 0 ? State.START : this.statements[first - 1].end;
+    builder.formatFrom(start, state);
+    return builder.build();
+  }
+
+  private boolean isSplit() {
+    return this.tokenizer.endsQueryAtSemicolon() && !this.cfg.minify;
+  }
+
+  private FormattedDocument whole(String text) {
+    FormattedDocument document = this.unsplit(text);
+    document.formatted = this.formatter.format(text, this.cfg);
+    return document;
+  }
+
+  // A document of the text with no statements, to format whole
+  private FormattedDocument unsplit(String text) {
+    return new FormattedDocument(
+        this.formatter, this.tokenizer, this.cfg, text, new Statement[0], new int[0]);
+  }
+
+  // Statements of an edited text, starting with the statements before the edit
+  private final class Builder {
+    private final String text;
+    // End of the edit in the old text, past which old boundaries are still boundaries
+    private final int editEnd;
+    // Offset the last statement tokenized was read up to
+    private int read;
+    private final int delta;
+    private final StatementScanner scanner;
+    // Limits of the call, or null
+    private final Budget budget;
+    private Statement[] statements;
+    private int[] ends;
+    private int size;
+
+    private Builder(String text, int editEnd, int kept, Budget budget) {
+      FormattedDocument old = FormattedDocument.this;
+      this.text = text;
+      this.editEnd = editEnd;
+      this.delta = text.length() - old.text.length();
+      this.scanner = new StatementScanner(old.tokenizer, budget);
+      this.budget = budget;
+      this.statements = Arrays.copyOf(old.statements, Math.max(16, old.statements.length + 1));
+      this.ends = Arrays.copyOf(old.ends, this.statements.length);
+      this.size = kept;
+      if (budget != null) {
+        for (int i = 0; i < kept; i++) {
+          budget.addTokens(old.statements[i].tokens.size());
+        }
+      }
+    }
+
+    // Formats the statements from the given offset, going back to the old statements once a
+    // boundary lines up with an old one past the edit and formatting reaches it in the same state
+    private void formatFrom(int start, State state) {
+      FormattedDocument old = FormattedDocument.this;
+      int oldIndex = 0;
+      Statement reused = null;
+      do {
+        Statement statement = this.next(start, state, reused);
+        start += statement.tokens.sourceLength();
+        state = statement.end;
+        this.add(statement, start);
+        reused = null;
+
+        int oldEnd = start - this.delta;
+        if (oldEnd < this.editEnd) {
+          continue;
+        }
+        while (oldIndex < old.ends.length && old.ends[oldIndex] < oldEnd) {
+          oldIndex++;
+        }
+        if (oldIndex + 1 < old.ends.length && old.ends[oldIndex] == oldEnd) {
+          if (old.statements[oldIndex].end.sameAs(state, old.cfg)) {
+            for (int i = oldIndex + 1; i < old.statements.length; i++) {
+              this.add(old.statements[i], old.ends[i] + this.delta);
+            }
+            return;
+          }
+          // The same text follows, so its tokens are still good
+          reused = old.statements[oldIndex + 1];
+        }
+      } while (start < this.text.length());
+    }
+
+    // Tokenizes and formats the statement at the given offset, joining the following ones while
+    // formatting does not end the usual way
+    private Statement next(int start, State state, Statement reused) {
+      TokenStream tokens;
+      if (reused != null) {
+        tokens = reused.tokens;
+        this.read = start + tokens.sourceLength() + reused.readPast;
+      } else {
+        tokens = this.scanStatement(start);
+      }
+      while (true) {
+        int end = start + tokens.sourceLength();
+        Statement statement =
+            FormattedDocument.this.format(
+                tokens, this.read - end, state, start == 0, this.budget);
+        if (statement.end.clean || end == this.text.length()) {
+          return statement;
+        }
+        int following = this.scanStatement(end).sourceLength();
+        tokens = this.scan(this.text.substring(start, end + following));
+      }
+    }
+
+    // Tokens up to the first ";" token that ends a statement from the given offset, or up to the
+    // end of the text. The text is read in stretches of growing length, so the tokens only depend
+    // on the text up to where the statement was found.
+    private TokenStream scanStatement(int start) {
+      this.scanner.reset();
+      int end = start;
+      while (end < this.text.length()) {
+        end = (int) Math.min(this.text.length(), end + Math.max(SCAN_LENGTH, end - start));
+        TokenStream tokens = this.scanner.statement(this.text, start, end, true);
+        if (tokens != null) {
+          this.read = end;
+          return tokens;
+        }
+      }
+      this.read = this.text.length();
+      return this.scan(this.text.substring(start));
+    }
+
+    private TokenStream scan(String source) {
+      Tokenizer tokenizer = FormattedDocument.this.tokenizer;
+      return tokenizer.scan(source, new TokenStream(source), tokenizer.matchers(), this.budget);
+    }
+
+    private void add(Statement statement, int end) {
+      if (this.size == this.statements.length) {
+        this.statements = Arrays.copyOf(this.statements, this.size * 2);
+        this.ends = Arrays.copyOf(this.ends, this.size * 2);
+      }
+      this.statements[this.size] = statement;
+      this.ends[this.size] = end;
+      this.size++;
+      if (this.budget != null) {
+        this.budget.addTokens(statement.tokens.size());
+      }
+    }
+
+    private FormattedDocument build() {
+      FormattedDocument old = FormattedDocument.this;
+      if (this.budget != null) {
+        this.budget.checkTokens(0);
+      }
+      return new FormattedDocument(
+          old.formatter,
+          old.tokenizer,
+          old.cfg,
+          this.text,
+          Arrays.copyOf(this.statements, this.size),
+          Arrays.copyOf(this.ends, this.size));
+    }
+  }
+
+  // Formats a statement from the state the previous ones left
+  private Statement format(
+      TokenStream tokens, int readPast, State state, boolean first, Budget budget) {
+    FormatContext ctx = new FormatContext(this.cfg, tokens);
+    ctx.budget = budget;
+    System.arraycopy(state.lookbehind, 0, ctx.before, 0, ctx.before.length);
+    ctx.previousReservedToken = state.previousReservedToken;
+    ctx.placeholderIndex = state.placeholderIndex;
+    if (!first) {
+      ctx.query.append(this.separator);
+    }
+    this.formatter.formatTokens(ctx);
+
+    Token[] lookbehind = new Token[FormatContext.LOOKBEHIND];
+    for (int n = 1; n <= lookbehind.length; n++) {
+      lookbehind[lookbehind.length - n] = ctx.token(tokens.size() - n);
+    }
+    boolean clean = ctx.endsStatement(this.separator);
+    String output = ctx.query.substring(first ? 0 : this.separator.length());
+    return new Statement(
+        tokens,
+        readPast,
+        output,
+        new State(lookbehind, ctx.previousReservedToken, ctx.placeholderIndex, clean));
+  }
+
+  private static final class Statement {
+    // Tokens of the statement, whose source is the text of the statement alone
+    private final TokenStream tokens;
+    // Number of chars after the statement read to tokenize it
+    private final int readPast;
+    // Output, without the separator the previous statement ended with
+    private final String output;
+    // State after formatting the statement
+    private final State end;
+
+    private Statement(TokenStream tokens, int readPast, String output, State end) {
+      this.tokens = tokens;
+      this.readPast = readPast;
+      this.output = output;
+      this.end = end;
+    }
+  }
+
+  // What formatting a statement depends on besides its tokens
+  private static final class State {
+    private static final State START =
+        new State(new Token[FormatContext.LOOKBEHIND], null, 0, true);
+
+    private final Token[] lookbehind;
+    private final Token previousReservedToken;
+    private final int placeholderIndex;
+    // Whether formatting ended the usual way, with nothing left open
+    private final boolean clean;
+
+    private State(
+        Token[] lookbehind, Token previousReservedToken, int placeholderIndex, boolean clean) {
+      this.lookbehind = lookbehind;
+      this.previousReservedToken = previousReservedToken;
+      this.placeholderIndex = placeholderIndex;
+      this.clean = clean;
+    }
+
+    private boolean sameAs(State other, FormatConfig cfg) {
+      if (this.clean != other.clean
+          || !FormatContext.sameToken(this.previousReservedToken, other.previousReservedToken)) {
+        return false;
+      }
+      // Placeholders are only counted for replacing them with params
+      if (!cfg.params.isEmpty() && this.placeholderIndex != other.placeholderIndex) {
+        return false;
+      }
+      for (int i = 0; i < this.lookbehind.length; i++) {
+        if (!FormatContext.sameToken(this.lookbehind[i], other.lookbehind[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of the words and symbols of a {@link DialectConfig}.
+ *
+ * <p>A list extended with more strings keeps the list it extends instead of copying it, so each
+ * plusX call on a config copies only what it adds. The hash code is computed once, a list
+ * extending another one continuing from the hash of the other, and lists with different hashes are
+ * told apart without comparing their elements.
+ */
+final class FrozenList extends AbstractList<String> implements RandomAccess {
+  static final FrozenList EMPTY = new FrozenList(null, new String[0]);
+  // Lists extending one another this many times are copied into one, keeping lookups short
+  private static final int MAX_DEPTH = 8;
+
+  // The list this one extends, or null
+  private final FrozenList base;
+  private final String[] added;
+  private final int size;
+  private final int depth;
+  private final int hash;
+
+  private FrozenList(FrozenList base, String[] added) {
+    this.base = base;
+    this.added = added;
+    this.size = (base == null ? 0 : base.size) + added.length;
+    this.depth = base == null ? 0 : base.depth + 1;
+    int hash = base == null ? 1 : base.hash;
+    for (String s : added) {
+      hash = 31 * hash + (s == null ? 0 : s.hashCode());
+    }
+    this.hash = hash;
+  }
+
+  /**
+   * @param list list to freeze, or null for an empty one
+   * @return the list itself if it is frozen already, or a frozen copy of it
+   */
+  static FrozenList of(List<String> list) {
+    if (list instanceof FrozenList) {
+      return (FrozenList) list;
+    }
+    if (list == null || list.isEmpty()) {
+      return EMPTY;
+    }
+    return new FrozenList(null, list.toArray(new String[0]));
+  }
+
+  /**
+   * @param more strings to add
+   * @return a list of the strings of this one followed by the given ones
+   */
+  FrozenList plus(List<String> more) {
+    String[] added = more.toArray(new String[0]);
+    if (added.length == 0) {
+      return this;
+    } else if (this.size == 0) {
+      return new FrozenList(null, added);
+    } else if (this.depth == MAX_DEPTH) {
+      String[] all = Arrays.copyOf(this.toArray(new String[0]), this.size + added.length);
+      System.arraycopy(added, 0, all, this.size, added.length);
+      return new FrozenList(null, all);
+    }
+    return new FrozenList(this, added);
+  }
+
+  @Override
+  public String get(int index) {
+    if (index < 0 || index >= this.size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+    }
+    FrozenList list = this;
+    while (index < list.size - list.added.length) {
+      list = list.base;
+    }
+    return list.added[index - (list.size - list.added.length)];
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o instanceof FrozenList && ((FrozenList) o).hash != this.hash) {
+      return false;
+    }
+    return super.equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    return this.hash;
+  }
+}
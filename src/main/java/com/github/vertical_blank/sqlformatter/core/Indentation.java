@@ -1,8 +1,6 @@
 package com.github.vertical_blank.sqlformatter.core;
 
-import java.util.Stack;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.Arrays;
 
 /**
  * Manages indentation levels.
@@ -14,20 +12,22 @@ import java.util.stream.IntStream;
  */
 public class Indentation {
 
-  enum IndentTypes {
-    INDENT_TYPE_TOP_LEVEL,
-    INDENT_TYPE_BLOCK_LEVEL
-  }
-
   private final String indent;
-  private final Stack<IndentTypes> indentTypes;
+  private final int maxDepth;
+  // Type of each level, true for top-level; only the first depth entries are in use
+  private boolean[] topLevel = new boolean[16];
+  private int depth;
+  // Indent strings by depth, built on first use
+  private String[] prefixes = new String[16];
 
   /**
    * @param indent Indent value, default is " " (2 spaces)
+   * @param maxDepth Maximum number of levels, from {@link FormatLimits#maxDepth()}
    */
-  Indentation(String indent) {
+  Indentation(String indent, int maxDepth) {
     this.indent = indent;
-    this.indentTypes = new Stack<>();
+    this.maxDepth = maxDepth;
+    this.prefixes[0] = "";
   }
 
   /**
@@ -36,19 +36,39 @@ public class Indentation {
    * @return {String}
    */
   public String getIndent() {
-    return IntStream.range(0, this.indentTypes.size())
-        .mapToObj(i -> this.indent)
-        .collect(Collectors.joining());
+    if (this.depth >= this.prefixes.length) {
+      this.prefixes = Arrays.copyOf(this.prefixes, this.depth * 2);
+    }
+    if (this.prefixes[this.depth] == null) {
+      for (int i = 1; i <= this.depth; i++) {
+        if (this.prefixes[i] == null) {
+          this.prefixes[i] = this.prefixes[i - 1] + this.indent;
+        }
+      }
+    }
+    return this.prefixes[this.depth];
   }
 
   /** Increases indentation by one top-level indent. */
   void increaseToplevel() {
-    this.indentTypes.push(IndentTypes.INDENT_TYPE_TOP_LEVEL);
+    this.push(true);
   }
 
   /** Increases indentation by one block-level indent. */
   void increaseBlockLevel() {
-    this.indentTypes.push(IndentTypes.INDENT_TYPE_BLOCK_LEVEL);
+    this.push(false);
+  }
+
+  private void push(boolean topLevel) {
+    if (this.depth == this.maxDepth) {
+      throw new FormatLimitExceededException(
+          FormatLimitExceededException.Limit.DEPTH,
+          "Indentation exceeds the limit of " + this.maxDepth + " levels");
+    }
+    if (this.depth == this.topLevel.length) {
+      this.topLevel = Arrays.copyOf(this.topLevel, this.depth * 2);
+    }
+    this.topLevel[this.depth++] = topLevel;
   }
 
   /**
@@ -56,9 +76,8 @@ public class Indentation {
    * top-level.
    */
   void decreaseTopLevel() {
-    if (!this.indentTypes.isEmpty()
-        && this.indentTypes.peek() == IndentTypes.INDENT_TYPE_TOP_LEVEL) {
-      this.indentTypes.pop();
+    if (this.depth > 0 && this.topLevel[this.depth - 1]) {
+      this.depth--;
     }
   }
 
@@ -67,15 +86,18 @@ public class Indentation {
    * block-level indent, throws away these as well.
    */
   void decreaseBlockLevel() {
-    while (this.indentTypes.size() > 0) {
-      IndentTypes type = this.indentTypes.pop();
-      if (type != IndentTypes.INDENT_TYPE_TOP_LEVEL) {
+    while (this.depth > 0) {
+      if (!this.topLevel[--this.depth]) {
         break;
       }
     }
   }
 
   void resetIndentation() {
-    this.indentTypes.clear();
+    this.depth = 0;
+  }
+
+  boolean isEmpty() {
+    return this.depth == 0;
   }
 }
@@ -1,6 +1,7 @@
 package com.github.vertical_blank.sqlformatter.core;
 
-import com.github.vertical_blank.sqlformatter.core.util.JSLikeList;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * Bookkeeper for inline blocks.
@@ -13,6 +14,11 @@ class InlineBlock {
 
   private int level;
   private final int maxColumnLength;
+  // Tokens the open parentheses below were found in
+  private TokenStream analyzed;
+  private final BitSet inlineOpenParens = new BitSet();
+  // Number of inline blocks begun
+  private int started;
 
   InlineBlock(int maxColumnLength) {
     this.maxColumnLength = maxColumnLength;
@@ -26,9 +32,10 @@ class InlineBlock {
    * @param tokens Array of all tokens
    * @param index Current token position
    */
-  void beginIfPossible(JSLikeList<Token> tokens, int index) {
+  void beginIfPossible(TokenStream tokens, int index) {
     if (this.level == 0 && this.isInlineBlock(tokens, index)) {
       this.level = 1;
+      this.started++;
     } else if (this.level > 0) {
       this.level++;
     } else {
@@ -36,11 +43,22 @@ class InlineBlock {
     }
   }
 
+  // Forgets the blocks found so far, for formatting another query
+  void reset() {
+    this.level = 0;
+    this.analyzed = null;
+    this.started = 0;
+  }
+
   /** Finishes current inline block. There might be several nested ones. */
   public void end() {
     this.level--;
   }
 
+  int started() {
+    return this.started;
+  }
+
   /**
    * True when inside an inline block
    *
@@ -52,44 +70,59 @@ class InlineBlock {
 
   // Check if this should be an inline parentheses block
   // Examples are "NOW()", "COUNT(*)", "int(10)", key(`somecolumn`), DECIMAL(7,2)
-  private boolean isInlineBlock(JSLikeList<Token> tokens, int index) {
-    int length = 0;
-    int level = 0;
-
-    for (int i = index; i < tokens.size(); i++) {
-      Token token = tokens.get(i);
-      length += token.value.length();
+  private boolean isInlineBlock(TokenStream tokens, int index) {
+    if (tokens != this.analyzed) {
+      this.analyze(tokens);
+      this.analyzed = tokens;
+    }
+    return this.inlineOpenParens.get(index);
+  }
 
-      // Overran max length
-      if (length > maxColumnLength) {
-        return false;
-      }
+  // Finds every inline block in one pass over the tokens. An open parenthesis starts one when its
+  // matching close parenthesis comes before the tokens from it overrun maxColumnLength, with no
+  // forbidden token in between. The lengths and forbidden tokens seen before each unmatched open
+  // parenthesis are kept on a stack, so the block is measured when it closes.
+  private void analyze(TokenStream tokens) {
+    this.inlineOpenParens.clear();
+    int[] stack = new int[3 * 16];
+    int top = 0;
+    int length = 0;
+    int forbidden = 0;
+    for (int i = 0; i < tokens.size(); i++) {
+      TokenTypes type = tokens.type(i);
+      int lengthBefore = length;
+      length += tokens.length(i);
 
-      if (token.type == TokenTypes.OPEN_PAREN) {
-        level++;
-      } else if (token.type == TokenTypes.CLOSE_PAREN) {
-        level--;
-        if (level == 0) {
-          return true;
+      if (type == TokenTypes.OPEN_PAREN) {
+        if (top == stack.length) {
+          stack = Arrays.copyOf(stack, top * 2);
+        }
+        stack[top++] = i;
+        stack[top++] = lengthBefore;
+        stack[top++] = forbidden;
+      } else if (type == TokenTypes.CLOSE_PAREN && top > 0) {
+        top -= 3;
+        if (length - stack[top + 1] <= this.maxColumnLength && forbidden == stack[top + 2]) {
+          this.inlineOpenParens.set(stack[top]);
         }
       }
 
-      if (this.isForbiddenToken(token)) {
-        return false;
+      if (this.isForbiddenToken(tokens, i)) {
+        forbidden++;
       }
     }
-    return false;
   }
 
   // Reserved words that cause newlines, comments and semicolons
   // are not allowed inside inline parentheses block
-  private boolean isForbiddenToken(Token token) {
-    return token.type == TokenTypes.RESERVED_TOP_LEVEL
-        || token.type == TokenTypes.RESERVED_NEWLINE
+  private boolean isForbiddenToken(TokenStream tokens, int index) {
+    TokenTypes type = tokens.type(index);
+    return type == TokenTypes.RESERVED_TOP_LEVEL
+        || type == TokenTypes.RESERVED_NEWLINE
         ||
         //                originally `TokenTypes.LINE_COMMENT` but this symbol is not defined
         //                token.type == TokenTypes.LINE_COMMENT ||
-        token.type == TokenTypes.BLOCK_COMMENT
-        || token.value.equals(";");
+        type == TokenTypes.BLOCK_COMMENT
+        || tokens.valueEquals(index, ";");
   }
 }
@@ -0,0 +1,242 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes tokens back with as little whitespace as reads them as the same tokens, for {@link
+ * FormatConfig#minify}.
+ *
+ * <p>Tokens are written in a single pass, keeping their values as they are. Two tokens are joined
+ * when the tokenizer reads the output back as the tokens written, and separated by one space or
+ * else a newline otherwise. A line comment is followed by a newline, and an open parenthesis keeps
+ * a space before it when it had whitespace before it, since formatting tells the two apart.
+ * Formatting the output therefore gives the same result as formatting the input.
+ *
+ * <p>The output is read back from the first token whose patterns read up to its end, since only
+ * those tokens can read differently once more is written. That is usually the last token alone,
+ * but a pattern failing to match, like a string with an escaped line break, reads further than
+ * the token, and then no whitespace may read back right until the text it failed at is written.
+ * The output from that token is then written again as the input was, and the input is copied on
+ * until the token reads the same whatever follows: tokens only depend on the text from their
+ * start, so the copy reads as the input did.
+ */
+final class Minifier {
+  private final Tokenizer tokenizer;
+  private final boolean stripComments;
+  private final StringBuilder out;
+  private final Tokenizer.Matchers matchers;
+  // Last token written
+  private String previous;
+  private int previousClass;
+  // End of the output, from the first token that may still read differently. Apart from while
+  // copying, it holds the tokens written with the input before each of them and whether the
+  // token before them is "."
+  private final StringBuilder unsettled = new StringBuilder();
+  private final TokenStream written = new TokenStream("");
+  private final List<String> inputs = new ArrayList<>();
+  private boolean afterDot;
+  // Whether the input is copied as it is, and the length of the unsettled output last read back
+  // while copying
+  private boolean copying;
+  private int copiedRead;
+  // Tokens the unsettled output reads as
+  private final TokenStream read = new TokenStream("");
+  // Input since the last token written, with the tokens left out
+  private final StringBuilder input = new StringBuilder();
+  // Whether tokens were left out after the previous one
+  private boolean stripped;
+
+  Minifier(Tokenizer tokenizer, FormatConfig cfg, StringBuilder out) {
+    this.tokenizer = tokenizer;
+    this.stripComments = cfg.stripComments;
+    this.out = out;
+    this.matchers = tokenizer.matchers();
+  }
+
+  /**
+   * Writes the tokens, continuing from the tokens written before.
+   *
+   * @param tokens tokens following the ones written before in the input
+   */
+  void write(TokenStream tokens) {
+    String source = tokens.source();
+    for (int i = 0; i < tokens.size(); i++) {
+      this.input.append(source, i == 0 ? 0 : tokens.end(i - 1), tokens.end(i));
+      if (this.stripComments && !this.copying && isStrippable(tokens, i)) {
+        this.stripped = true;
+        continue;
+      }
+      String value = tokens.value(i);
+      int tokenClass = tokens.tokenClass(i);
+      if (this.copying) {
+        this.copy(value, tokenClass);
+      } else {
+        String separator = this.previous == null ? "" : this.separator(tokens, i, value);
+        if (!this.append(separator, value, tokenClass)
+            && !(separator.isEmpty() && this.append(" ", value, tokenClass))
+            && !this.append("\n", value, tokenClass)) {
+          this.copyFromUnsettled(value, tokenClass);
+        }
+      }
+      this.input.setLength(0);
+      this.previous = value;
+      this.previousClass = tokenClass;
+      this.stripped = false;
+    }
+  }
+
+  /**
+   * Returns the number of chars at the end of the output that may still be written again, and
+   * are to be kept when the output is taken out before writing more tokens.
+   *
+   * @return number of chars
+   */
+  int pending() {
+    return this.unsettled.length();
+  }
+
+  // Whitespace to try first between the previous token and the given one
+  private String separator(TokenStream tokens, int index, String value) {
+    boolean whitespaceBefore = tokens.hasWhitespaceBefore(index);
+    if (Tokenizer.type(this.previousClass) == TokenTypes.LINE_COMMENT) {
+      return "\n";
+    } else if (tokens.type(index) == TokenTypes.OPEN_PAREN && whitespaceBefore) {
+      return " ";
+    } else if ((whitespaceBefore || this.stripped)
+        && isWordChar(this.previous.charAt(this.previous.length() - 1))
+        && isWordChar(value.charAt(0))) {
+      return " ";
+    }
+    return "";
+  }
+
+  // Writes the token after the separator if the output then reads back as the tokens written
+  private boolean append(String separator, String value, int tokenClass) {
+    int mark = this.unsettled.length();
+    this.unsettled.append(separator).append(value);
+    int settled = this.readBack();
+    if (!this.readsAsWritten(mark + separator.length(), tokenClass)) {
+      this.unsettled.setLength(mark);
+      return false;
+    }
+    this.out.append(separator).append(value);
+    this.inputs.add(this.input.toString());
+    this.written.add(tokenClass, mark + separator.length(), this.unsettled.length());
+    this.settle(settled);
+    return true;
+  }
+
+  // Writes the output from the first unsettled token and the token again as the input was
+  private void copyFromUnsettled(String value, int tokenClass) {
+    this.out.setLength(this.out.length() - this.unsettled.length());
+    if (!this.written.isEmpty()) {
+      this.unsettled.setLength(this.written.end(0));
+      for (int i = 1; i < this.inputs.size(); i++) {
+        this.unsettled.append(this.inputs.get(i));
+      }
+    }
+    this.out.append(this.unsettled);
+    this.copying = true;
+    this.copiedRead = 0;
+    this.copy(value, tokenClass);
+  }
+
+  // Copies the token with the input before it, copying on until the output reads as written.
+  // The output is read back again once it has doubled, which keeps copying linear.
+  private void copy(String value, int tokenClass) {
+    String input = this.input.toString();
+    this.out.append(input);
+    this.unsettled.append(input);
+    if (this.unsettled.length() < 2 * this.copiedRead) {
+      return;
+    }
+    this.copiedRead = this.unsettled.length();
+    int settled = this.readBack();
+    TokenStream read = this.read;
+    int last = read.size() - 1;
+    int end = this.unsettled.length();
+    if (settled < last
+        || read.tokenClass(last) != tokenClass
+        || read.start(last) != end - value.length()
+        || read.end(last) != end) {
+      return;
+    }
+    // Only the token copied last can read differently now
+    this.copying = false;
+    if (last > 0) {
+      int dot = last - 1;
+      this.afterDot = read.length(dot) == 1 && this.unsettled.charAt(read.start(dot)) == '.';
+    }
+    this.unsettled.delete(0, read.start(last));
+    this.written.reset("");
+    this.written.add(tokenClass, 0, value.length());
+    this.inputs.clear();
+    this.inputs.add(input);
+  }
+
+  // Reads the unsettled output back, returning the number of tokens settled
+  private int readBack() {
+    String text = this.unsettled.toString();
+    this.read.reset(text);
+    return this.tokenizer.scanMore(text, 0, this.afterDot, this.read, this.matchers, false, null);
+  }
+
+  private boolean readsAsWritten(int start, int tokenClass) {
+    TokenStream read = this.read;
+    TokenStream written = this.written;
+    if (read.size() != written.size() + 1) {
+      return false;
+    }
+    for (int i = 0; i < written.size(); i++) {
+      if (read.tokenClass(i) != written.tokenClass(i)
+          || read.start(i) != written.start(i)
+          || read.end(i) != written.end(i)) {
+        return false;
+      }
+    }
+    int last = written.size();
+    return read.tokenClass(last) == tokenClass
+        && read.start(last) == start
+        && read.end(last) == this.unsettled.length();
+  }
+
+  // Drops the written tokens that cannot read differently any more
+  private void settle(int settled) {
+    if (settled == 0) {
+      return;
+    }
+    TokenStream written = this.written;
+    int dot = settled - 1;
+    this.afterDot =
+        written.length(dot) == 1 && this.unsettled.charAt(written.start(dot)) == '.';
+    int shift = written.start(settled);
+    this.unsettled.delete(0, shift);
+    this.inputs.subList(0, settled).clear();
+    TokenStream kept = this.read;
+    kept.reset("");
+    for (int i = settled; i < written.size(); i++) {
+      kept.add(written.tokenClass(i), written.start(i) - shift, written.end(i) - shift);
+    }
+    written.reset("");
+    for (int i = 0; i < kept.size(); i++) {
+      written.add(kept.tokenClass(i), kept.start(i), kept.end(i));
+    }
+  }
+
+  // Comments other than optimizer hints, such as /*+ INDEX(t) */, and MySQL's /*! ... */ code
+  private static boolean isStrippable(TokenStream tokens, int index) {
+    TokenTypes type = tokens.type(index);
+    if (type == TokenTypes.LINE_COMMENT) {
+      return true;
+    }
+    return type == TokenTypes.BLOCK_COMMENT
+        && !tokens.valueStartsWith(index, "/*+")
+        && !tokens.valueStartsWith(index, "/*!");
+  }
+
+  // Two of these next to each other always read as a single word
+  private static boolean isWordChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+}
@@ -0,0 +1,225 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Formats a multi-statement script on a {@link ForkJoinPool}.
+ *
+ * <p>The script is cut into segments at likely statement boundaries, and the segments are tokenized
+ * in parallel. A segment whose last token is not the ";" it was cut at, or whose tokens could read
+ * differently with the text after it, is merged with the next one. Every segment is then formatted
+ * in parallel, starting from the state the previous segment is expected to leave behind:
+ * indentation is reset at ";", and the previous reserved word and the number of indexed
+ * placeholders are taken from the raw tokens. The actual end states are checked in order, and a
+ * segment that started from the wrong state is formatted again, so the output is the same as
+ * formatting serially.
+ *
+ * <p>Each segment gets a budget of its own with the deadline of the call, and the tokens of all of
+ * them are counted once they are merged.
+ */
+final class ParallelFormatter {
+  // Scripts shorter than two segments of this length are formatted serially, as are scripts of
+  // dialects where ";" is not always a token of its own
+  static final int MIN_SEGMENT_LENGTH = 16 * 1024;
+
+  private ParallelFormatter() {}
+
+  private static final class Segment {
+    private final int start;
+    private final int end;
+    private TokenStream tokens;
+    private boolean endsStatement;
+    private Budget budget;
+    private Token[] lookbehind;
+    private Token previousReservedToken;
+    private int placeholderIndex;
+    private FormatContext ctx;
+
+    private Segment(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    // Tokenizes the segment, noting whether it ends a statement whatever text follows
+    private void scan(String query, Tokenizer tokenizer, Budget budget) {
+      String text = query.substring(this.start, this.end);
+      this.budget = budget == null ? null : budget.fork(text);
+      Tokenizer.Matchers matchers = tokenizer.matchers();
+      this.tokens = tokenizer.scanStatement(text, matchers, this.budget);
+      this.endsStatement = this.tokens != null;
+      if (this.tokens == null) {
+        this.tokens = tokenizer.scan(text, new TokenStream(text), matchers, this.budget);
+      }
+    }
+  }
+
+  static String format(
+      AbstractFormatter formatter,
+      String query,
+      FormatConfig cfg,
+      ForkJoinPool pool,
+      Budget budget) {
+    Tokenizer tokenizer = formatter.tokenizer();
+    // Minifying is a single cheap pass, not worth splitting
+    if (pool.getParallelism() < 2 || !tokenizer.endsQueryAtSemicolon() || cfg.minify) {
+      return formatter.format(query, cfg, null, budget).toString();
+    }
+    int segmentLength =
+        Math.max(MIN_SEGMENT_LENGTH, query.length() / (pool.getParallelism() * 4));
+    List<Integer> cuts = StatementSplitter.split(query, segmentLength);
+    if (cuts.isEmpty()) {
+      return formatter.format(query, cfg, null, budget).toString();
+    }
+
+    List<Segment> segments = new ArrayList<>();
+    int start = 0;
+    for (int cut : cuts) {
+      segments.add(new Segment(start, cut));
+      start = cut;
+    }
+    segments.add(new Segment(start, query.length()));
+    forEach(pool, segments, s -> s.scan(query, tokenizer, budget));
+    segments = merge(segments, query, tokenizer, budget);
+    if (budget != null) {
+      int tokens = 0;
+      for (Segment segment : segments) {
+        tokens += segment.tokens.size();
+      }
+      budget.checkTokens(tokens);
+    }
+
+    guessStartStates(segments);
+    String separator = FormatContext.separator(cfg);
+    forEach(pool, segments, s -> s.ctx = format(formatter, cfg, s, separator));
+
+    StringBuilder result = new StringBuilder(query.length() + query.length() / 4);
+    for (int i = 0; i < segments.size(); i++) {
+      Segment segment = segments.get(i);
+      if (i > 0) {
+        FormatContext previous = segments.get(i - 1).ctx;
+        if (!previous.endsStatement(separator)) {
+          // The previous statement did not end the usual way
+          return formatter.format(query, cfg, null, budget).toString();
+        }
+        if (!FormatContext.sameToken(previous.previousReservedToken, segment.previousReservedToken)
+            || previous.placeholderIndex != segment.placeholderIndex) {
+          segment.previousReservedToken = previous.previousReservedToken;
+          segment.placeholderIndex = previous.placeholderIndex;
+          segment.ctx = format(formatter, cfg, segment, separator);
+        }
+        result.append(segment.ctx.query, separator.length(), segment.ctx.query.length());
+      } else {
+        result.append(segment.ctx.query);
+      }
+    }
+    return result.toString().trim();
+  }
+
+  // Merges every segment not cut right after a ";" that ends a statement into the next one
+  private static List<Segment> merge(
+      List<Segment> segments, String query, Tokenizer tokenizer, Budget budget) {
+    List<Segment> merged = new ArrayList<>();
+    Segment current = null;
+    for (int i = 0; i < segments.size(); i++) {
+      Segment segment = segments.get(i);
+      if (current != null) {
+        segment = new Segment(current.start, segment.end);
+        segment.scan(query, tokenizer, budget);
+      }
+      if (i == segments.size() - 1 || segment.endsStatement) {
+        merged.add(segment);
+        current = null;
+      } else {
+        current = segment;
+      }
+    }
+    return merged;
+  }
+
+  private static void guessStartStates(List<Segment> segments) {
+    Token[] lookbehind = new Token[FormatContext.LOOKBEHIND];
+    Token previousReservedToken = null;
+    int placeholderIndex = 0;
+    for (Segment segment : segments) {
+      segment.lookbehind = lookbehind.clone();
+      segment.previousReservedToken = previousReservedToken;
+      segment.placeholderIndex = placeholderIndex;
+      TokenStream tokens = segment.tokens;
+      int previousReservedIndex = -1;
+      for (int i = 0; i < tokens.size(); i++) {
+        TokenTypes type = tokens.type(i);
+        if (type == TokenTypes.RESERVED
+            || type == TokenTypes.RESERVED_TOP_LEVEL
+            || type == TokenTypes.RESERVED_TOP_LEVEL_NO_INDENT
+            || type == TokenTypes.RESERVED_NEWLINE) {
+          previousReservedIndex = i;
+        } else if (type == TokenTypes.PLACEHOLDER) {
+          String key = tokens.get(i).key;
+          if (key == null || key.isEmpty()) {
+            placeholderIndex++;
+          }
+        }
+      }
+      if (previousReservedIndex != -1) {
+        previousReservedToken = tokens.get(previousReservedIndex);
+      }
+      // Shift the last tokens of the segment in, keeping older ones when it is shorter
+      int keep = Math.max(0, lookbehind.length - tokens.size());
+      System.arraycopy(lookbehind, lookbehind.length - keep, lookbehind, 0, keep);
+      for (int i = keep; i < lookbehind.length; i++) {
+        lookbehind[i] = tokens.get(tokens.size() - lookbehind.length + i);
+      }
+    }
+  }
+
+  private static FormatContext format(
+      AbstractFormatter formatter, FormatConfig cfg, Segment segment, String separator) {
+    FormatContext ctx = new FormatContext(cfg, segment.tokens);
+    ctx.budget = segment.budget;
+    System.arraycopy(segment.lookbehind, 0, ctx.before, 0, ctx.before.length);
+    ctx.previousReservedToken = segment.previousReservedToken;
+    ctx.placeholderIndex = segment.placeholderIndex;
+    if (segment.start > 0) {
+      ctx.query.append(separator);
+    }
+    formatter.formatTokens(ctx);
+    return ctx;
+  }
+
+  private static void forEach(ForkJoinPool pool, List<Segment> segments, Consumer<Segment> action) {
+    pool.invoke(new ForEach(segments, 0, segments.size(), action));
+  }
+
+  // Applies an action to a range of segments, splitting the range in halves
+  private static final class ForEach extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Segment> segments;
+    private final int from;
+    private final int to;
+    private final Consumer<Segment> action;
+
+    private ForEach(List<Segment> segments, int from, int to, Consumer<Segment> action) {
+      this.segments = segments;
+      this.from = from;
+      this.to = to;
+      this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.to - this.from == 1) {
+        this.action.accept(this.segments.get(this.from));
+      } else {
+        int mid = (this.from + this.to) >>> 1;
+        invokeAll(
+            new ForEach(this.segments, this.from, mid, this.action),
+            new ForEach(this.segments, mid, this.to, this.action));
+      }
+    }
+  }
+}
@@ -1,18 +1,43 @@
 package com.github.vertical_blank.sqlformatter.core;
 
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 
-/** Handles placeholder replacement with given params. */
+/**
+ * Handles placeholder replacement with given params.
+ *
+ * <p>Params are immutable, so a single instance can be reused by any number of formatting calls.
+ */
 public interface Params {
 
   public static final Params EMPTY = new Empty();
 
   boolean isEmpty();
 
-  Object get();
+  /**
+   * Returns the next param of indexed placeholders.
+   *
+   * @return param
+   * @deprecated Params are looked up by index, so that an instance can be shared between calls.
+   *     Implement {@link #get(int)} instead.
+   */
+  @Deprecated
+  default Object get() {
+    return null;
+  }
+
+  /**
+   * Returns the param of an indexed placeholder. Calls {@link #get()} unless implemented, for
+   * params written before placeholders were numbered.
+   *
+   * @param index Number of indexed placeholders preceding this one
+   * @return param
+   */
+  @SuppressWarnings("deprecation")
+  default Object get(int index) {
+    return this.get();
+  }
 
   Object getByName(String key);
 
@@ -35,7 +60,10 @@ public interface Params {
    *
    * @param token token.key Placeholder key token.value Placeholder value
    * @return param or token.value when params are missing
+   * @deprecated Implement {@link #get(Token, int)} instead, which is told the index of indexed
+   *     placeholders.
    */
+  @Deprecated
   default Object get(Token token) {
     if (this.isEmpty()) {
       return token.value;
@@ -47,6 +75,23 @@ public interface Params {
     }
   }
 
+  /**
+   * Returns param value that matches given placeholder with param key. Named placeholders, and
+   * any placeholder when params are missing, need no index and go through {@link #get(Token)},
+   * for params written before placeholders were numbered.
+   *
+   * @param token token.key Placeholder key token.value Placeholder value
+   * @param index Number of indexed placeholders preceding this one
+   * @return param or token.value when params are missing
+   */
+  @SuppressWarnings("deprecation")
+  default Object get(Token token, int index) {
+    if (this.isEmpty() || !(token.key == null || token.key.isEmpty())) {
+      return this.get(token);
+    }
+    return this.get(index);
+  }
+
   public static class NamedParams implements Params {
     private final Map<String, ?> params;
 
@@ -59,7 +104,7 @@ public interface Params {
     }
 
     @Override
-    public Object get() {
+    public Object get(int index) {
       return null;
     }
 
@@ -75,19 +120,38 @@ public interface Params {
   }
 
   public static class IndexedParams implements Params {
-    private final Queue<?> params;
+    private final List<?> params;
 
     IndexedParams(List<?> params) {
-      this.params = new ArrayDeque<>(params);
+      this.params = new ArrayList<>(params);
     }
 
     public boolean isEmpty() {
       return this.params.isEmpty();
     }
 
+    // Placeholders past the last param are left as they are
+    @Override
+    public Object get(Token token, int index) {
+      if (index >= this.params.size()) {
+        return token.value;
+      }
+      return Params.super.get(token, index);
+    }
+
+    @Override
+    public Object get(int index) {
+      return this.params.get(index);
+    }
+
+    /**
+     * @return the first param, as params are no longer taken off in order
+     * @deprecated Use {@link #get(int)}.
+     */
+    @Deprecated
     @Override
     public Object get() {
-      return this.params.poll();
+      return this.params.isEmpty() ? null : this.params.get(0);
     }
 
     @Override
@@ -109,7 +173,7 @@ public interface Params {
     }
 
     @Override
-    public Object get() {
+    public Object get(int index) {
       return null;
     }
 
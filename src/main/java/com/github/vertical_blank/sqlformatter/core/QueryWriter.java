@@ -0,0 +1,93 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+
+/**
+ * Writes formatted output as it is produced, with the same result as writing the trimmed output at
+ * once.
+ */
+final class QueryWriter {
+  // Chars copied to a Writer at a time
+  private static final int CHUNK = 8192;
+
+  private final Writer out;
+  private boolean started;
+
+  QueryWriter(Writer out) {
+    this.out = out;
+  }
+
+  /**
+   * Writes the output that can no longer change and removes it from the buffer. Formatting only
+   * ever trims trailing spaces, and the final trim drops trailing whitespace, so everything after
+   * the last char above ' ' stays in the buffer.
+   *
+   * @param query output buffer
+   * @throws IOException If writing fails
+   */
+  void write(StringBuilder query) throws IOException {
+    int end = query.length();
+    while (end > 0 && query.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    int start = 0;
+    if (!this.started) {
+      while (start < end && query.charAt(start) <= ' ') {
+        start++;
+      }
+    }
+    if (start < end) {
+      append(query, start, end, this.out);
+      this.started = true;
+    }
+    query.delete(0, end);
+  }
+
+  /**
+   * Appends a range of output to a destination without making a String of it. Writers and
+   * CharBuffers would make one in their append methods, so a Writer is given the chars in chunks
+   * and a CharBuffer backed by an array gets them copied into its array.
+   *
+   * @param chars output
+   * @param start start of the range
+   * @param end end of the range
+   * @param out destination
+   * @throws IOException If writing fails
+   * @throws BufferOverflowException If the destination is a CharBuffer without room for the range
+   */
+  static void append(CharSequence chars, int start, int end, Appendable out) throws IOException {
+    if (out instanceof Writer) {
+      Writer writer = (Writer) out;
+      char[] chunk = new char[Math.min(end - start, CHUNK)];
+      for (int i = start; i < end; i += chunk.length) {
+        int n = Math.min(chunk.length, end - i);
+        getChars(chars, i, i + n, chunk, 0);
+        writer.write(chunk, 0, n);
+      }
+    } else if (out instanceof CharBuffer && ((CharBuffer) out).hasArray()) {
+      CharBuffer buffer = (CharBuffer) out;
+      if (buffer.remaining() < end - start) {
+        throw new BufferOverflowException();
+      }
+      getChars(chars, start, end, buffer.array(), buffer.arrayOffset() + buffer.position());
+      buffer.position(buffer.position() + end - start);
+    } else {
+      out.append(chars, start, end);
+    }
+  }
+
+  private static void getChars(CharSequence chars, int start, int end, char[] dst, int offset) {
+    if (chars instanceof StringBuilder) {
+      ((StringBuilder) chars).getChars(start, end, dst, offset);
+    } else if (chars instanceof String) {
+      ((String) chars).getChars(start, end, dst, offset);
+    } else {
+      for (int i = start; i < end; i++) {
+        dst[offset++] = chars.charAt(i);
+      }
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import com.github.vertical_blank.sqlformatter.core.util.JSLikeList;
+import com.github.vertical_blank.sqlformatter.core.util.Util;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Case-insensitive trie of reserved words, matching exactly what the regex built by {@link
+ * com.github.vertical_blank.sqlformatter.core.util.RegexUtil#createReservedWordRegex} matches:
+ * letters are compared ignoring ASCII case, a space matches one or more whitespace chars, a word
+ * must end at a word boundary, and among the words that match the longest one in the list wins.
+ */
+final class ReservedWords {
+  static final Pattern WORD_BOUNDARY = Pattern.compile("\\b");
+
+  private static final Pattern REGEX_SYNTAX = Pattern.compile("[\\^$\\\\.*+?()\\[\\]{}|]");
+
+  private final Node root;
+
+  private ReservedWords(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Builds the trie of the given words.
+   *
+   * @param words reserved words
+   * @return trie, or null when some word relies on regex syntax and must be matched as a regex
+   */
+  static ReservedWords of(List<String> words) {
+    if (words.isEmpty()) {
+      return null;
+    }
+    // The regex tries the words longest first, so the rank of a word is its place in that order
+    JSLikeList<String> sorted = Util.sortByLengthDesc(new JSLikeList<>(words));
+    Builder root = new Builder();
+    for (int rank = 0; rank < sorted.size(); rank++) {
+      // An empty group, as in "NOW()", matches nothing but still counts towards the length
+      String word = sorted.get(rank).replace("()", "");
+      if (word.isEmpty()
+          || REGEX_SYNTAX.matcher(word).find()
+          || word.startsWith(" ")
+          || word.endsWith(" ")
+          || word.contains("  ")) {
+        return null;
+      }
+      Builder node = root;
+      for (int i = 0; i < word.length(); i++) {
+        char c = word.charAt(i);
+        if (c != ' ' && isWhitespace(c)) {
+          return null;
+        }
+        node = node.children.computeIfAbsent(fold(c), k -> new Builder());
+      }
+      node.rank = Math.min(node.rank, rank);
+    }
+    return new ReservedWords(root.build());
+  }
+
+  /**
+   * @param c first char of a token
+   * @return false when no reserved word starts with c
+   */
+  boolean mayStartWith(char c) {
+    return this.root.child(fold(c)) != null;
+  }
+
+  /**
+   * Matches a reserved word at the given index.
+   *
+   * @param input input
+   * @param index start of the token
+   * @param boundary matcher of {@link #WORD_BOUNDARY} on the input with transparent bounds, left
+   *     with its region at the end of the input and hitEnd set when matching read up to there
+   * @return end of the matched word, or -1
+   */
+  int match(CharSequence input, int index, Matcher boundary) {
+    int length = input.length();
+    int bestRank = Integer.MAX_VALUE;
+    int bestEnd = -1;
+    Node node = this.root;
+    int pos = index;
+    while (node != null) {
+      if (node.rank < bestRank && boundary.region(pos, length).lookingAt()) {
+        bestRank = node.rank;
+        bestEnd = pos;
+      }
+      if (pos == length) {
+        if (node.rank >= bestRank) {
+          boundary.region(pos, length).lookingAt();
+        }
+        break;
+      }
+      char c = input.charAt(pos);
+      if (isWhitespace(c)) {
+        node = node.child(' ');
+        while (pos < length && isWhitespace(input.charAt(pos))) {
+          pos++;
+        }
+      } else {
+        node = node.child(fold(c));
+        pos++;
+      }
+    }
+    return bestEnd;
+  }
+
+  // Chars matched by "\s"
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  // "(?i)" without UNICODE_CASE only folds ASCII letters
+  private static char fold(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  private static final class Node {
+    private final char[] keys;
+    private final Node[] children;
+    private final int rank;
+
+    private Node(char[] keys, Node[] children, int rank) {
+      this.keys = keys;
+      this.children = children;
+      this.rank = rank;
+    }
+
+    private Node child(char c) {
+      int low = 0;
+      int high = this.keys.length - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (this.keys[mid] < c) {
+          low = mid + 1;
+        } else if (this.keys[mid] > c) {
+          high = mid - 1;
+        } else {
+          return this.children[mid];
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final class Builder {
+    private final Map<Character, Builder> children = new TreeMap<>();
+    private int rank = Integer.MAX_VALUE;
+
+    private Node build() {
+      char[] keys = new char[this.children.size()];
+      Node[] nodes = new Node[this.children.size()];
+      int i = 0;
+      for (Map.Entry<Character, Builder> entry : this.children.entrySet()) {
+        keys[i] = entry.getKey();
+        nodes[i] = entry.getValue().build();
+        i++;
+      }
+      return new Node(keys, nodes, this.rank);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a SQL script one statement at a time.
+ *
+ * <p>Statements end at the ";" tokens a {@link StatementScanner} finds, so a ";" inside a string or
+ * comment does not end one. The tokens of each statement are the same as those of the whole
+ * script. Limits apply to the whole script, as chars and tokens are read.
+ */
+final class StatementReader {
+  private final Reader in;
+  private final Tokenizer tokenizer;
+  private final StatementScanner scanner;
+  // Limits of the call, or null
+  private final Budget budget;
+  private final char[] buffer = new char[8192];
+  private final StringBuilder pending = new StringBuilder();
+  // Length of pending when it was last searched for a statement end
+  private int scanned = -1;
+  // Chars read so far
+  private long length;
+  private boolean eof;
+
+  StatementReader(Reader in, Tokenizer tokenizer, Budget budget) {
+    this.in = in;
+    this.tokenizer = tokenizer;
+    this.scanner = new StatementScanner(tokenizer, budget);
+    this.budget = budget;
+  }
+
+  /**
+   * Returns the tokens of the next statement, including its closing ";".
+   *
+   * @return tokens, or null at the end of the input
+   * @throws IOException If reading fails
+   * @throws FormatLimitExceededException If the script goes over a limit
+   */
+  TokenStream next() throws IOException {
+    while (true) {
+      if (this.tokenizer.endsQueryAtSemicolon() && this.scanned < this.pending.length()) {
+        this.scanned = this.pending.length();
+        // Tokenizing may wait for more input, but not when reading it would block
+        boolean force = this.eof || !this.in.ready();
+        TokenStream tokens = this.scanner.statement(this.pending, 0, this.scanned, force);
+        if (tokens != null) {
+          this.pending.delete(0, tokens.sourceLength());
+          this.scanned = -1;
+          this.done(tokens);
+          return tokens;
+        }
+      }
+      if (this.eof) {
+        String source = this.pending.toString();
+        TokenStream tokens =
+            this.tokenizer.scan(
+                source, new TokenStream(source), this.tokenizer.matchers(), this.budget);
+        this.pending.setLength(0);
+        this.scanner.reset();
+        this.done(tokens);
+        return tokens.isEmpty() ? null : tokens;
+      }
+      int n = this.in.read(this.buffer);
+      if (n == -1) {
+        this.eof = true;
+        // Look once more, without putting tokenizing off
+        this.scanned = -1;
+      } else {
+        this.pending.append(this.buffer, 0, n);
+        this.length += n;
+        if (this.budget != null) {
+          this.budget.checkLength(this.length);
+        }
+      }
+    }
+  }
+
+  private void done(TokenStream tokens) {
+    if (this.budget != null) {
+      this.budget.addTokens(tokens.size());
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+/**
+ * Finds the ";" token that ends a statement, in a text that may still be growing.
+ *
+ * <p>A ";" token ends the statement when no token before it can read differently with more text.
+ * A ";" inside a string or comment is part of that token instead, and a string quoted with q'{ and
+ * }' that closes further on reads up to the end of the text. The tokens read are kept for the
+ * next call, up to the first one that could read differently, so the text of a statement is only
+ * tokenized again from that token on. That token can be long, like an unterminated string running
+ * to the end of the text, so it is tokenized again only once the text has grown at least as much
+ * as would be read again, which keeps the work linear in the length of the statement.
+ *
+ * <p>Only dialects where ";" is always a token of its own can be split this way.
+ */
+final class StatementScanner {
+  private final Tokenizer tokenizer;
+  private final Tokenizer.Matchers matchers;
+  // Limits of the call, or null
+  private final Budget budget;
+  private TokenStream tokens;
+  // Number of tokens that read the same whatever follows them
+  private int settled;
+  // Length of the statement text tokenized by the last call
+  private int scannedTo;
+
+  StatementScanner(Tokenizer tokenizer, Budget budget) {
+    this.tokenizer = tokenizer;
+    this.matchers = tokenizer.matchers();
+    this.budget = budget;
+    this.reset();
+  }
+
+  /** Starts over with another statement, forgetting the tokens read so far. */
+  void reset() {
+    this.tokens = new TokenStream("");
+    this.settled = 0;
+    this.scannedTo = 0;
+  }
+
+  /**
+   * Returns the tokens of the statement at the given offset, up to the ";" token that ends it.
+   * Calls for the same statement pass the same start and growing ends, and the text may grow
+   * between them. The scanner starts over after returning tokens.
+   *
+   * @param text text holding the statement
+   * @param start offset of the statement in the text
+   * @param end end of the text read so far
+   * @param force whether to tokenize now, even if little text came since the last call
+   * @return tokens whose source is the text of the statement, or null when the text read so far
+   *     does not end it or tokenizing was put off
+   * @throws FormatLimitExceededException If the statement goes over a limit
+   */
+  TokenStream statement(CharSequence text, int start, int end, boolean force) {
+    TokenStream tokens = this.tokens;
+    int settled = this.settled;
+    int from = settled == 0 ? 0 : tokens.end(settled - 1);
+    int length = end - start;
+    if (!force && length - this.scannedTo < this.scannedTo - from) {
+      return null;
+    }
+    tokens.truncate(settled);
+    boolean afterDot =
+        settled != 0 && tokens.length(settled - 1) == 1 && text.charAt(start + from - 1) == '.';
+    String more = text.subSequence(start + from, end).toString();
+    this.settled =
+        this.tokenizer.scanMore(more, from, afterDot, tokens, this.matchers, true, this.budget);
+    this.scannedTo = length;
+    if (tokens.isEmpty() || this.settled < tokens.size()) {
+      return null;
+    }
+    tokens.source(text.subSequence(start, start + tokens.end(tokens.size() - 1)).toString());
+    this.reset();
+    return tokens;
+  }
+}
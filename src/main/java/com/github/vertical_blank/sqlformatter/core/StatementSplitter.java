@@ -0,0 +1,101 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds likely statement boundaries in a script without tokenizing it.
+ *
+ * <p>Quoted strings and identifiers, "--" and block comments, and dollar-quoted bodies are skipped
+ * the way most dialects write them. Boundaries are only candidates: one that falls inside a
+ * construct of a dialect-specific syntax is caught when the statements are tokenized.
+ */
+final class StatementSplitter {
+  private StatementSplitter() {}
+
+  /**
+   * Returns offsets just after the ";" chars that likely end a statement.
+   *
+   * @param input script
+   * @param minLength minimum distance between two offsets
+   * @return offsets in ascending order, excluding the end of the input
+   */
+  static List<Integer> split(CharSequence input, int minLength) {
+    List<Integer> cuts = new ArrayList<>();
+    int length = input.length();
+    int last = 0;
+    int i = 0;
+    while (i < length) {
+      char c = input.charAt(i);
+      if (c == '\'' || c == '"' || c == '`') {
+        i = skipQuoted(input, i + 1, c);
+      } else if (c == '[') {
+        i = skipTo(input, i + 1, "]");
+      } else if (c == '-' && startsWith(input, i, "--")) {
+        i = skipTo(input, i + 2, "\n");
+      } else if (c == '/' && startsWith(input, i, "/*")) {
+        i = skipTo(input, i + 2, "*/");
+      } else if (c == '$') {
+        i = skipDollarQuoted(input, i);
+      } else {
+        i++;
+        if (c == ';' && i - last >= minLength && i < length) {
+          cuts.add(i);
+          last = i;
+        }
+      }
+    }
+    return cuts;
+  }
+
+  // Returns the offset after the closing quote, skipping backslash escapes
+  private static int skipQuoted(CharSequence input, int i, char quote) {
+    int length = input.length();
+    while (i < length) {
+      char c = input.charAt(i++);
+      if (c == '\\') {
+        i++;
+      } else if (c == quote) {
+        return i;
+      }
+    }
+    return length;
+  }
+
+  private static int skipTo(CharSequence input, int i, String end) {
+    int length = input.length();
+    for (; i < length; i++) {
+      if (startsWith(input, i, end)) {
+        return i + end.length();
+      }
+    }
+    return length;
+  }
+
+  // A "$tag$" is skipped along with the body up to the same tag; any other "$" is a single char
+  private static int skipDollarQuoted(CharSequence input, int i) {
+    int length = input.length();
+    int j = i + 1;
+    while (j < length
+        && (Character.isLetterOrDigit(input.charAt(j)) || input.charAt(j) == '_')) {
+      j++;
+    }
+    if (j == length || input.charAt(j) != '$') {
+      return i + 1;
+    }
+    String tag = input.subSequence(i, j + 1).toString();
+    return skipTo(input, j + 1, tag);
+  }
+
+  private static boolean startsWith(CharSequence input, int i, String prefix) {
+    if (i + prefix.length() > input.length()) {
+      return false;
+    }
+    for (int k = 0; k < prefix.length(); k++) {
+      if (input.charAt(i + k) != prefix.charAt(k)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
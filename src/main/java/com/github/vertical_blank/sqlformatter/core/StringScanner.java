@@ -0,0 +1,367 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import com.github.vertical_blank.sqlformatter.languages.StringLiteral;
+import java.util.List;
+
+/**
+ * Finds the end of string literals of the kinds in {@link StringLiteral}, with the same result as
+ * their patterns but without a regex engine.
+ *
+ * <p>The patterns repeat groups that hold quantifiers of their own, and the one for $tag$ strings
+ * refers back to its tag, so a matcher recurses and backtracks over every char of a long or
+ * unclosed literal. Each scanner here goes forward only, reads each char a bounded number of times
+ * and keeps no stack. Like a matcher, it records whether it read up to the end of the input, where
+ * more input could have given another result.
+ */
+final class StringScanner {
+  // Literal kinds, in the order of StringLiteral
+  private static final int BACK_QUOTE = 0;
+  private static final int DOUBLE_QUOTE = 1;
+  private static final int U_DOUBLE_QUOTE = 2;
+  private static final int U_SINGLE_QUOTE = 3;
+  private static final int E_SINGLE_QUOTE = 4;
+  private static final int N_SINGLE_QUOTE = 5;
+  private static final int Q_SINGLE_QUOTE = 6;
+  private static final int SINGLE_QUOTE = 7;
+  private static final int BRACE = 8;
+  private static final int DOLLAR = 9;
+  private static final int BRACKET = 10;
+  // Set on kinds following Q'' in a list, whose pattern turns on case-insensitive matching for
+  // the rest of the alternation
+  private static final int IGNORE_CASE = 0x100;
+
+  private static final String[] KEYS = {
+    StringLiteral.BACK_QUOTE,
+    StringLiteral.DOUBLE_QUOTE,
+    StringLiteral.U_DOUBLE_QUOTE,
+    StringLiteral.U_SINGLE_QUOTE,
+    StringLiteral.E_SINGLE_QUOTE,
+    StringLiteral.N_SINGLE_QUOTE,
+    StringLiteral.Q_SINGLE_QUOTE,
+    StringLiteral.SINGLE_QUOTE,
+    StringLiteral.BRACE,
+    StringLiteral.DOLLAR,
+    StringLiteral.BRACKET
+  };
+
+  private CharSequence input;
+  private int length;
+  // Whether a scanner read up to the end of the input since this was cleared
+  boolean hitEnd;
+
+  void reset(CharSequence input) {
+    this.input = input;
+    this.length = input.length();
+    this.hitEnd = false;
+  }
+
+  /**
+   * @param stringTypes string types of a dialect, as in {@link DialectConfig#stringTypes}
+   * @return the kinds to scan for, in order, or null when some type has no scanner or there are
+   *     none, which the pattern matches as an empty string
+   */
+  static int[] kinds(List<String> stringTypes) {
+    if (stringTypes.isEmpty()) {
+      return null;
+    }
+    int[] kinds = new int[stringTypes.size()];
+    int ignoreCase = 0;
+    for (int i = 0; i < kinds.length; i++) {
+      int kind = indexOf(stringTypes.get(i));
+      if (kind == -1) {
+        return null;
+      }
+      kinds[i] = kind | ignoreCase;
+      if (kind == Q_SINGLE_QUOTE) {
+        ignoreCase = IGNORE_CASE;
+      }
+    }
+    return kinds;
+  }
+
+  private static int indexOf(String key) {
+    for (int i = 0; i < KEYS.length; i++) {
+      if (KEYS[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the literal of the first of the given kinds that starts at the index.
+   *
+   * @param kinds kinds from {@link #kinds(List)}
+   * @param index start of the literal
+   * @return end of the literal, or -1 when none starts at the index
+   */
+  int scan(int[] kinds, int index) {
+    for (int kind : kinds) {
+      int end = this.scan(kind, index);
+      if (end != -1) {
+        return end;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the literal of the first of the given kinds that follows one of the prefixes at the
+   * index, trying the prefixes in order.
+   *
+   * @param prefixes prefixes of the literal
+   * @param kinds kinds from {@link #kinds(List)}
+   * @param index start of the prefix
+   * @return end of the literal, or -1 when none starts at the index
+   */
+  int scan(String[] prefixes, int[] kinds, int index) {
+    for (String prefix : prefixes) {
+      if (this.startsWith(index, prefix, false)) {
+        int end = this.scan(kinds, index + prefix.length());
+        if (end != -1) {
+          return end;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private int scan(int kind, int index) {
+    boolean ignoreCase = (kind & IGNORE_CASE) != 0;
+    switch (kind & ~IGNORE_CASE) {
+      case BACK_QUOTE:
+        return this.delimited(index, '`', '`', '`');
+      case DOUBLE_QUOTE:
+        return this.escaped(index, "\"", false);
+      case U_DOUBLE_QUOTE:
+        return this.escaped(index, "U&\"", ignoreCase);
+      case U_SINGLE_QUOTE:
+        return this.escaped(index, "U&'", ignoreCase);
+      case E_SINGLE_QUOTE:
+        return this.escaped(index, "E'", ignoreCase);
+      case N_SINGLE_QUOTE:
+        return this.escaped(index, "N'", ignoreCase);
+      case Q_SINGLE_QUOTE:
+        return this.alternativeQuoted(index);
+      case SINGLE_QUOTE:
+        return this.escaped(index, "'", false);
+      case BRACE:
+        return this.delimited(index, '{', '}', '{');
+      case DOLLAR:
+        return this.dollarQuoted(index, ignoreCase);
+      default:
+        return this.delimited(index, '[', ']', ']');
+    }
+  }
+
+  /**
+   * Matches ((P[^Q\\]*(?:\\.[^Q\\]*)*(Q|$))+), where P is the prefix ending with the quote Q: the
+   * quote closes the literal unless escaped with a backslash, and quoted parts next to each other
+   * are one literal. An escape fails on a line terminator or at the end, ending the literal before
+   * the part holding it.
+   */
+  private int escaped(int index, String prefix, boolean ignoreCase) {
+    char quote = prefix.charAt(prefix.length() - 1);
+    int end = -1;
+    int i = index;
+    while (this.startsWith(i, prefix, ignoreCase)) {
+      i += prefix.length();
+      while (true) {
+        int c = this.charAt(i);
+        if (c == -1) {
+          // Closed by the end of the input
+          return this.length;
+        } else if (c == quote) {
+          i++;
+          break;
+        } else if (c == '\\') {
+          int escaped = this.charAt(i + 1);
+          if (escaped == -1 || isLineTerminator((char) escaped)) {
+            return end;
+          }
+          i += 2;
+        } else {
+          i++;
+        }
+      }
+      end = i;
+    }
+    return end;
+  }
+
+  /**
+   * Matches ((O[^C]*($|C))+) with O as the open char of the first part and next of the ones after
+   * it, the close char C ending each part unless the input ends first.
+   */
+  private int delimited(int index, char open, char close, char next) {
+    int end = -1;
+    int i = index;
+    char expected = open;
+    while (this.charAt(i) == expected) {
+      i++;
+      int c;
+      while ((c = this.charAt(i)) != -1 && c != close) {
+        i++;
+      }
+      if (c == -1) {
+        return this.length;
+      }
+      i++;
+      end = i;
+      expected = next;
+    }
+    return end;
+  }
+
+  /**
+   * Matches n?q' with one of the pairs {}, [], &lt;&gt; and (), ignoring case: the text between
+   * them goes up to the first close char followed by a quote and must not hold a backslash or a
+   * line terminator. Literals with the same pair next to each other are one literal.
+   */
+  private int alternativeQuoted(int index) {
+    int end = -1;
+    int i = index;
+    char open = 0;
+    while (true) {
+      int c = this.charAt(i);
+      if (c == 'n' || c == 'N') {
+        c = this.charAt(++i);
+      }
+      if ((c != 'q' && c != 'Q') || this.charAt(i + 1) != '\'') {
+        return end;
+      }
+      c = this.charAt(i + 2);
+      if (open == 0 ? closeOf(c) == 0 : c != open) {
+        return end;
+      }
+      open = (char) c;
+      char close = closeOf(open);
+      i += 3;
+      while (true) {
+        c = this.charAt(i);
+        if (c == close) {
+          if (this.charAt(i + 1) == '\'') {
+            i += 2;
+            break;
+          }
+        } else if (c == -1 || c == '\\' || isLineTerminator((char) c)) {
+          return end;
+        }
+        i++;
+      }
+      end = i;
+    }
+  }
+
+  private static char closeOf(int open) {
+    switch (open) {
+      case '{':
+        return '}';
+      case '[':
+        return ']';
+      case '<':
+        return '>';
+      case '(':
+        return ')';
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Matches $tag$ followed by the text up to the first repeat of the tag, or up to the end of the
+   * input, leaving out a line terminator that ends it. A tag holds only ASCII word chars between
+   * its dollars, so comparing it only where a "$" appears reads each char a bounded number of
+   * times.
+   */
+  private int dollarQuoted(int index, boolean ignoreCase) {
+    if (this.charAt(index) != '$') {
+      return -1;
+    }
+    int i = index + 1;
+    int c;
+    while ((c = this.charAt(i)) != -1 && isWordChar((char) c)) {
+      i++;
+    }
+    if (c != '$') {
+      return -1;
+    }
+    int tagLength = i + 1 - index;
+    for (i++; ; i++) {
+      if (i + tagLength > this.length) {
+        this.hitEnd = true;
+      } else if (this.input.charAt(i) == '$'
+          && this.regionMatches(i, index, tagLength, ignoreCase)) {
+        return i + tagLength;
+      }
+      if (this.endsAt(i)) {
+        return i;
+      }
+    }
+  }
+
+  // The char at the index, or -1 at the end of the input
+  private int charAt(int index) {
+    if (index >= this.length) {
+      this.hitEnd = true;
+      return -1;
+    }
+    return this.input.charAt(index);
+  }
+
+  private boolean startsWith(int index, String prefix, boolean ignoreCase) {
+    for (int i = 0; i < prefix.length(); i++) {
+      int c = this.charAt(index + i);
+      if (c == -1 || !sameChar(prefix.charAt(i), (char) c, ignoreCase)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean regionMatches(int index, int other, int length, boolean ignoreCase) {
+    for (int i = 0; i < length; i++) {
+      if (!sameChar(this.input.charAt(other + i), this.input.charAt(index + i), ignoreCase)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Whether "$" matches at the index, which without MULTILINE is at the end of the input or before
+  // a line terminator that ends it
+  private boolean endsAt(int index) {
+    int length = this.length;
+    if (index < length - 2) {
+      return false;
+    } else if (index == length - 2) {
+      if (this.input.charAt(index) != '\r' || this.input.charAt(index + 1) != '\n') {
+        return false;
+      }
+    } else if (index == length - 1) {
+      char c = this.input.charAt(index);
+      if (c == '\n' ? index > 0 && this.input.charAt(index - 1) == '\r' : !isLineTerminator(c)) {
+        return false;
+      }
+    }
+    this.hitEnd = true;
+    return true;
+  }
+
+  // Chars that "." does not match
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  private static boolean isWordChar(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+  }
+
+  private static boolean sameChar(char expected, char c, boolean ignoreCase) {
+    return expected == c || (ignoreCase && toLowerCase(expected) == toLowerCase(c));
+  }
+
+  private static char toLowerCase(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+}
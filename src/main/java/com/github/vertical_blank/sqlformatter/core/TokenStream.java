@@ -0,0 +1,143 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import com.github.vertical_blank.sqlformatter.core.util.JSLikeList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tokens of a query, kept as offsets into the query rather than {@link Token} objects.
+ *
+ * <p>A token is stored as its class in the {@link Tokenizer}, which determines its type and how its
+ * placeholder key is read, and its start and end in the source. The whitespace before a token runs
+ * from the end of the previous one, so it needs no offsets of its own. Values are only read from
+ * the source when asked for, and {@link #get(int)} builds a Token on demand.
+ */
+final class TokenStream {
+  private String source;
+  private byte[] classes;
+  private int[] starts;
+  private int[] ends;
+  private int size;
+
+  TokenStream(String source) {
+    this.source = source;
+    // A token and the whitespace before it average a few chars in most queries
+    int capacity = Math.max(16, source.length() / 4);
+    this.classes = new byte[capacity];
+    this.starts = new int[capacity];
+    this.ends = new int[capacity];
+  }
+
+  // Starts over with the tokens of another source, keeping the arrays
+  void reset(String source) {
+    this.source = source;
+    this.size = 0;
+  }
+
+  // Drops the tokens from the given index on
+  void truncate(int size) {
+    this.size = size;
+  }
+
+  // Points the tokens at the source they were read from, when they were read from pieces of it
+  void source(String source) {
+    this.source = source;
+  }
+
+  void add(int tokenClass, int start, int end) {
+    if (this.size == this.classes.length) {
+      int capacity = this.size + (this.size >> 1);
+      this.classes = Arrays.copyOf(this.classes, capacity);
+      this.starts = Arrays.copyOf(this.starts, capacity);
+      this.ends = Arrays.copyOf(this.ends, capacity);
+    }
+    this.classes[this.size] = (byte) tokenClass;
+    this.starts[this.size] = start;
+    this.ends[this.size] = end;
+    this.size++;
+  }
+
+  String source() {
+    return this.source;
+  }
+
+  int sourceLength() {
+    return this.source.length();
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  TokenTypes type(int index) {
+    return Tokenizer.type(this.classes[index]);
+  }
+
+  int tokenClass(int index) {
+    return this.classes[index];
+  }
+
+  int start(int index) {
+    return this.starts[index];
+  }
+
+  int end(int index) {
+    return this.ends[index];
+  }
+
+  boolean hasWhitespaceBefore(int index) {
+    return this.starts[index] > (index == 0 ? 0 : this.ends[index - 1]);
+  }
+
+  int length(int index) {
+    return this.ends[index] - this.starts[index];
+  }
+
+  boolean valueEquals(int index, String value) {
+    return this.length(index) == value.length()
+        && this.source.regionMatches(this.starts[index], value, 0, value.length());
+  }
+
+  boolean valueStartsWith(int index, String prefix) {
+    return this.length(index) >= prefix.length()
+        && this.source.startsWith(prefix, this.starts[index]);
+  }
+
+  String value(int index) {
+    return this.source.substring(this.starts[index], this.ends[index]);
+  }
+
+  /**
+   * Returns the token at the given index, built from the source.
+   *
+   * @param index index
+   * @return token, or null when the index is out of range
+   */
+  Token get(int index) {
+    if (index < 0 || index >= this.size) {
+      return null;
+    }
+    String value = this.value(index);
+    String whitespaceBefore =
+        this.source.substring(index == 0 ? 0 : this.ends[index - 1], this.starts[index]);
+    return new Token(
+        this.type(index),
+        value,
+        null,
+        whitespaceBefore,
+        Tokenizer.placeholderKey(this.classes[index], value));
+  }
+
+  JSLikeList<Token> toList() {
+    List<Token> tokens = new ArrayList<>(this.size);
+    for (int i = 0; i < this.size; i++) {
+      tokens.add(this.get(i));
+    }
+    return new JSLikeList<>(tokens);
+  }
+}
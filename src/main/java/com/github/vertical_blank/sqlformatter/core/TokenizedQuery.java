@@ -0,0 +1,48 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+/**
+ * A query broken into tokens by {@link AbstractFormatter#tokenize(String)}, which can be formatted
+ * any number of times under different FormatConfigs without reading the query again.
+ *
+ * <p>Instances are immutable and can be shared between threads. They can only be formatted by the
+ * formatter that tokenized them, since tokens depend on the dialect.
+ */
+public final class TokenizedQuery {
+  final AbstractFormatter formatter;
+  final Tokenizer tokenizer;
+  final TokenStream tokens;
+
+  TokenizedQuery(AbstractFormatter formatter, Tokenizer tokenizer, TokenStream tokens) {
+    this.formatter = formatter;
+    this.tokenizer = tokenizer;
+    this.tokens = tokens;
+  }
+
+  /**
+   * @return The query
+   */
+  public String query() {
+    return this.tokens.source();
+  }
+
+  /**
+   * @return Number of tokens
+   */
+  public int size() {
+    return this.tokens.size();
+  }
+
+  /**
+   * Returns a token of the query.
+   *
+   * @param index Index of the token, from 0
+   * @return token
+   * @throws IndexOutOfBoundsException If there is no token at the index
+   */
+  public Token get(int index) {
+    if (index < 0 || index >= this.tokens.size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.tokens.size());
+    }
+    return this.tokens.get(index);
+  }
+}
@@ -2,14 +2,23 @@ package com.github.vertical_blank.sqlformatter.core;
 
 import com.github.vertical_blank.sqlformatter.core.util.JSLikeList;
 import com.github.vertical_blank.sqlformatter.core.util.RegexUtil;
-import com.github.vertical_blank.sqlformatter.core.util.Util;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 public class Tokenizer {
+  // Tokenizers kept by of(), enough for every built-in dialect and a few custom ones
+  private static final int CACHE_SIZE = 32;
+  // Compiled tokenizers are immutable, so every DialectConfig of equal value shares one.
+  // Entries in access order, oldest first, guarded by its own lock
+  private static final Map<DialectConfig, Tokenizer> cache = new LinkedHashMap<>(16, 0.75f, true);
+
   // private final Pattern WHITESPACE_PATTERN;
   private final Pattern NUMBER_PATTERN;
   private final Pattern OPERATOR_PATTERN;
@@ -32,6 +41,52 @@ public class Tokenizer {
   private final Pattern IDENT_NAMED_PLACEHOLDER_PATTERN;
   private final Pattern STRING_NAMED_PLACEHOLDER_PATTERN;
 
+  // Token classes, in the order they are tried
+  private static final int LINE_COMMENT = 0;
+  private static final int BLOCK_COMMENT = 1;
+  private static final int STRING = 2;
+  private static final int OPEN_PAREN = 3;
+  private static final int CLOSE_PAREN = 4;
+  private static final int IDENT_NAMED_PLACEHOLDER = 5;
+  private static final int STRING_NAMED_PLACEHOLDER = 6;
+  private static final int INDEXED_PLACEHOLDER = 7;
+  private static final int NUMBER = 8;
+  private static final int RESERVED_TOP_LEVEL = 9;
+  private static final int RESERVED_NEWLINE = 10;
+  private static final int RESERVED_TOP_LEVEL_NO_INDENT = 11;
+  private static final int RESERVED_PLAIN = 12;
+  private static final int WORD = 13;
+  private static final int OPERATOR = 14;
+
+  private static final TokenTypes[] TYPES = {
+    TokenTypes.LINE_COMMENT,
+    TokenTypes.BLOCK_COMMENT,
+    TokenTypes.STRING,
+    TokenTypes.OPEN_PAREN,
+    TokenTypes.CLOSE_PAREN,
+    TokenTypes.PLACEHOLDER,
+    TokenTypes.PLACEHOLDER,
+    TokenTypes.PLACEHOLDER,
+    TokenTypes.NUMBER,
+    TokenTypes.RESERVED_TOP_LEVEL,
+    TokenTypes.RESERVED_NEWLINE,
+    TokenTypes.RESERVED_TOP_LEVEL_NO_INDENT,
+    TokenTypes.RESERVED,
+    TokenTypes.WORD,
+    TokenTypes.OPERATOR
+  };
+
+  // Patterns indexed by token class, null for the ones the dialect does not use
+  private final Pattern[] patterns;
+  // Tries of the reserved word classes, used instead of their patterns
+  private final ReservedWords[] reservedWords;
+  // Kinds of string literals read by scanners instead of their patterns, null to use the patterns
+  private final int[] stringKinds;
+  private final String[] namedPlaceholderTypes;
+  private final int[] allCandidates;
+  private final int[][] candidatesByFirstChar;
+  private final boolean endsQueryAtSemicolon;
+
   /**
    * @param cfg {String[]} cfg.reservedWords Reserved words in SQL {String[]}
    *     cfg.reservedTopLevelWords Words that are set to new line separately {String[]}
@@ -58,17 +113,16 @@ public class Tokenizer {
     this.LINE_COMMENT_PATTERN =
         Pattern.compile(RegexUtil.createLineCommentRegex(new JSLikeList<>(cfg.lineCommentTypes)));
 
+    ReservedWords topLevelWords = ReservedWords.of(cfg.reservedTopLevelWords);
+    ReservedWords topLevelWordsNoIndent = ReservedWords.of(cfg.reservedTopLevelWordsNoIndent);
+    ReservedWords newlineWords = ReservedWords.of(cfg.reservedNewlineWords);
+    ReservedWords plainWords = ReservedWords.of(cfg.reservedWords);
     this.RESERVED_TOP_LEVEL_PATTERN =
-        Pattern.compile(
-            RegexUtil.createReservedWordRegex(new JSLikeList<>(cfg.reservedTopLevelWords)));
+        reservedWordPattern(cfg.reservedTopLevelWords, topLevelWords);
     this.RESERVED_TOP_LEVEL_NO_INDENT_PATTERN =
-        Pattern.compile(
-            RegexUtil.createReservedWordRegex(new JSLikeList<>(cfg.reservedTopLevelWordsNoIndent)));
-    this.RESERVED_NEWLINE_PATTERN =
-        Pattern.compile(
-            RegexUtil.createReservedWordRegex(new JSLikeList<>(cfg.reservedNewlineWords)));
-    this.RESERVED_PLAIN_PATTERN =
-        Pattern.compile(RegexUtil.createReservedWordRegex(new JSLikeList<>(cfg.reservedWords)));
+        reservedWordPattern(cfg.reservedTopLevelWordsNoIndent, topLevelWordsNoIndent);
+    this.RESERVED_NEWLINE_PATTERN = reservedWordPattern(cfg.reservedNewlineWords, newlineWords);
+    this.RESERVED_PLAIN_PATTERN = reservedWordPattern(cfg.reservedWords, plainWords);
 
     this.WORD_PATTERN =
         Pattern.compile(RegexUtil.createWordRegex(new JSLikeList<>(cfg.specialWordChars)));
@@ -90,197 +144,410 @@ public class Tokenizer {
         RegexUtil.createPlaceholderRegexPattern(
             new JSLikeList<>(cfg.namedPlaceholderTypes),
             RegexUtil.createStringPattern(new JSLikeList<>(cfg.stringTypes)));
+
+    this.patterns =
+        new Pattern[] {
+          this.LINE_COMMENT_PATTERN,
+          this.BLOCK_COMMENT_PATTERN,
+          this.STRING_PATTERN,
+          this.OPEN_PAREN_PATTERN,
+          this.CLOSE_PAREN_PATTERN,
+          this.IDENT_NAMED_PLACEHOLDER_PATTERN,
+          this.STRING_NAMED_PLACEHOLDER_PATTERN,
+          this.INDEXED_PLACEHOLDER_PATTERN,
+          this.NUMBER_PATTERN,
+          this.RESERVED_TOP_LEVEL_PATTERN,
+          this.RESERVED_NEWLINE_PATTERN,
+          this.RESERVED_TOP_LEVEL_NO_INDENT_PATTERN,
+          this.RESERVED_PLAIN_PATTERN,
+          this.WORD_PATTERN,
+          this.OPERATOR_PATTERN
+        };
+    this.reservedWords = new ReservedWords[this.patterns.length];
+    this.reservedWords[RESERVED_TOP_LEVEL] = topLevelWords;
+    this.reservedWords[RESERVED_NEWLINE] = newlineWords;
+    this.reservedWords[RESERVED_TOP_LEVEL_NO_INDENT] = topLevelWordsNoIndent;
+    this.reservedWords[RESERVED_PLAIN] = plainWords;
+    this.stringKinds = StringScanner.kinds(cfg.stringTypes);
+    this.namedPlaceholderTypes = cfg.namedPlaceholderTypes.toArray(new String[0]);
+    this.allCandidates =
+        IntStream.range(0, this.patterns.length)
+            .filter(i -> this.patterns[i] != null || this.reservedWords[i] != null)
+            .toArray();
+    this.candidatesByFirstChar = this.candidatesByFirstChar();
+    this.endsQueryAtSemicolon =
+        Arrays.equals(this.candidatesByFirstChar[';'], new int[] {OPERATOR})
+            && cfg.operators.stream().noneMatch(op -> op.length() > 1 && op.startsWith(";"));
+  }
+
+  // Reserved words are looked up in a trie unless some of them rely on regex syntax. A class with
+  // no words has no pattern, as the one built for it would match a lone "\b" at the end.
+  private static Pattern reservedWordPattern(List<String> words, ReservedWords trie) {
+    if (trie != null || words.isEmpty()) {
+      return null;
+    }
+    return Pattern.compile(RegexUtil.createReservedWordRegex(new JSLikeList<>(words)));
   }
 
   /**
-   * Takes a SQL string and breaks it into tokens. Each token is an object with type and value.
+   * Returns the compiled tokenizer for the given config, compiling it on first use. Tokenizers hold
+   * no per-call state and can be shared between threads.
    *
-   * @param input input The SQL string
-   * @return {Object[]} tokens An array of tokens.
+   * <p>The most recently used configs are cached, so callers cycling through many distinct configs
+   * compile them again and should keep their tokenizers themselves instead.
+   *
+   * @param cfg DialectConfig
+   * @return Tokenizer
    */
-  public JSLikeList<Token> tokenize(String input) {
-    List<Token> tokens = new ArrayList<>();
-    Token token = null;
-
-    // Keep processing the string until it is empty
-    while (!input.isEmpty()) {
-      // grab any preceding whitespace
-      String[] findBeforeWhitespace = findBeforeWhitespace(input);
-      String whitespaceBefore = findBeforeWhitespace[0];
-      input = findBeforeWhitespace[1];
-
-      if (!input.isEmpty()) {
-        // Get the next token and the token type
-        token = this.getNextToken(input, token);
-        // Advance the string
-        input = input.substring(token.value.length());
-
-        tokens.add(token.withWhitespaceBefore(whitespaceBefore));
+  public static Tokenizer of(DialectConfig cfg) {
+    synchronized (cache) {
+      Tokenizer tokenizer = cache.get(cfg);
+      if (tokenizer != null) {
+        return tokenizer;
       }
     }
-    return new JSLikeList<>(tokens);
-  }
-
-  private String[] findBeforeWhitespace(String input) {
-    int index = 0;
-    char[] chars = input.toCharArray();
-    int beforeLength = chars.length;
-    while (index != beforeLength && Character.isWhitespace(chars[index])) {
-      index++;
+    // Compiled outside the lock, so threads only wait for each other's lookups
+    Tokenizer tokenizer = new Tokenizer(cfg);
+    synchronized (cache) {
+      Tokenizer previous = cache.putIfAbsent(cfg, tokenizer);
+      if (previous != null) {
+        return previous;
+      }
+      Iterator<Tokenizer> eldest = cache.values().iterator();
+      while (cache.size() > CACHE_SIZE) {
+        eldest.next();
+        eldest.remove();
+      }
+      return tokenizer;
     }
-    return new String[] {
-      new String(chars, 0, index), new String(chars, index, beforeLength - index)
-    };
-  }
-
-  // private String getWhitespace(String input) {
-  //   String firstMatch = getFirstMatch(input, this.WHITESPACE_PATTERN);
-  //   return firstMatch != null ? firstMatch : "";
-  // }
-
-  private Token getNextToken(String input, Token previousToken) {
-    return Util.firstNotnull(
-        () -> this.getCommentToken(input),
-        () -> this.getStringToken(input),
-        () -> this.getOpenParenToken(input),
-        () -> this.getCloseParenToken(input),
-        () -> this.getPlaceholderToken(input),
-        () -> this.getNumberToken(input),
-        () -> this.getReservedWordToken(input, previousToken),
-        () -> this.getWordToken(input),
-        () -> this.getOperatorToken(input));
   }
 
-  private Token getCommentToken(String input) {
-    return Util.firstNotnull(
-        () -> this.getLineCommentToken(input), () -> this.getBlockCommentToken(input));
-  }
-
-  private Token getLineCommentToken(String input) {
-    return this.getTokenOnFirstMatch(input, TokenTypes.LINE_COMMENT, this.LINE_COMMENT_PATTERN);
-  }
-
-  private Token getBlockCommentToken(String input) {
-    return this.getTokenOnFirstMatch(input, TokenTypes.BLOCK_COMMENT, this.BLOCK_COMMENT_PATTERN);
-  }
-
-  private Token getStringToken(String input) {
-    return this.getTokenOnFirstMatch(input, TokenTypes.STRING, this.STRING_PATTERN);
-  }
-
-  private Token getOpenParenToken(String input) {
-    return this.getTokenOnFirstMatch(input, TokenTypes.OPEN_PAREN, this.OPEN_PAREN_PATTERN);
-  }
-
-  private Token getCloseParenToken(String input) {
-    return this.getTokenOnFirstMatch(input, TokenTypes.CLOSE_PAREN, this.CLOSE_PAREN_PATTERN);
+  /**
+   * Whether a ";" is always a token of its own, whatever follows it. Input can then be cut after a
+   * ";" token without changing the tokens on either side.
+   *
+   * @return true when input can be split at ";" tokens
+   */
+  boolean endsQueryAtSemicolon() {
+    return this.endsQueryAtSemicolon;
   }
 
-  private Token getPlaceholderToken(String input) {
-    return Util.firstNotnull(
-        () -> this.getIdentNamedPlaceholderToken(input),
-        () -> this.getStringNamedPlaceholderToken(input),
-        () -> this.getIndexedPlaceholderToken(input));
+  /**
+   * Takes a SQL string and breaks it into tokens. Each token is an object with type and value.
+   *
+   * @param input input The SQL string
+   * @return {Object[]} tokens An array of tokens.
+   */
+  public JSLikeList<Token> tokenize(CharSequence input) {
+    return this.scan(input).toList();
   }
 
-  private Token getIdentNamedPlaceholderToken(String input) {
-    return this.getPlaceholderTokenWithKey(
-        input, this.IDENT_NAMED_PLACEHOLDER_PATTERN, v -> v.substring(1));
+  /**
+   * Breaks a SQL string into tokens, recording where each one is instead of creating it.
+   *
+   * <p>The input is never sliced: a cursor walks over it and every pattern is matched against the
+   * region starting at the cursor.
+   *
+   * @param input input The SQL string
+   * @return tokens
+   */
+  TokenStream scan(CharSequence input) {
+    String source = input.toString();
+    return this.scan(source, new TokenStream(source), new Matchers());
   }
 
-  private Token getStringNamedPlaceholderToken(String input) {
-    return this.getPlaceholderTokenWithKey(
-        input,
-        this.STRING_NAMED_PLACEHOLDER_PATTERN,
-        v ->
-            this.getEscapedPlaceholderKey(
-                v.substring(2, v.length() - 1), v.substring(v.length() - 1)));
+  /**
+   * Breaks a SQL string into tokens like {@link #scan(CharSequence)}, reusing a token stream and
+   * matchers left from a previous query.
+   *
+   * @param source The SQL string
+   * @param tokens token stream to reset and fill
+   * @param matchers matchers from {@link #matchers()}
+   * @return the given token stream
+   */
+  TokenStream scan(String source, TokenStream tokens, Matchers matchers) {
+    return this.scan(source, tokens, matchers, null);
   }
 
-  private Token getIndexedPlaceholderToken(String input) {
-    return this.getPlaceholderTokenWithKey(
-        input, this.INDEXED_PLACEHOLDER_PATTERN, v -> v.substring(1));
-  }
+  /**
+   * Breaks a SQL string into tokens like {@link #scan(String, TokenStream, Matchers)}, within the
+   * limits of a call. Patterns read the input through the budget, so one running long stops at the
+   * deadline too.
+   *
+   * @param source The SQL string
+   * @param tokens token stream to reset and fill
+   * @param matchers matchers from {@link #matchers()}
+   * @param budget limits of the call, or null
+   * @return the given token stream
+   * @throws FormatLimitExceededException If the input goes over a limit
+   */
+  TokenStream scan(String source, TokenStream tokens, Matchers matchers, Budget budget) {
+    tokens.reset(source);
+    matchers.reset(budget == null ? source : budget.over(source));
+    int length = source.length();
+    int index = 0;
 
-  private Token getPlaceholderTokenWithKey(
-      String input, Pattern regex, java.util.function.Function<String, String> parseKey) {
-    Token token = this.getTokenOnFirstMatch(input, TokenTypes.PLACEHOLDER, regex);
-    if (token != null) {
-      return token.withKey(parseKey.apply(token.value));
+    // Keep processing the string until it is empty
+    while (index < length) {
+      // skip any preceding whitespace, it is read back from the source when needed
+      index = skipWhitespace(source, index);
+
+      if (index < length) {
+        // A reserved word cannot be preceded by a "."
+        // this makes it so in "mytable.from", "from" is not considered a reserved word
+        boolean afterDot = !tokens.isEmpty() && tokens.valueEquals(tokens.size() - 1, ".");
+        // Get the next token, and advance the cursor past it
+        int tokenClass = this.nextToken(source, index, afterDot, matchers);
+        tokens.add(tokenClass, index, matchers.end);
+        index = matchers.end;
+        if (budget != null) {
+          budget.checkTokens(tokens.size());
+        }
+      }
     }
-    return token;
+    return tokens;
   }
 
-  private String getEscapedPlaceholderKey(String key, String quoteChar) {
-    return key.replaceAll(RegexUtil.escapeRegExp("\\") + quoteChar, quoteChar);
+  /**
+   * Breaks text following tokens already read into more tokens, the same as scanning the text of
+   * all of them at once would, and appends them.
+   *
+   * <p>Tokens before the first one a pattern read up to the end of the text at cannot read
+   * differently whatever text follows, except the last one, whose end may not be where the next
+   * token starts. Reading can resume from the start of the first token that is not settled. In
+   * dialects where input can be split at ";" tokens, a ";" token is settled too.
+   *
+   * @param text text following the tokens already read
+   * @param offset offset of the text in the source of the tokens
+   * @param afterDot whether the last token already read is "."
+   * @param tokens tokens to append to
+   * @param matchers matchers from {@link #matchers()}
+   * @param toSemicolon whether to stop after a ";" token when every token before it is settled
+   * @param budget limits of the call, or null
+   * @return number of tokens settled, which is every token when stopped at a ";" and at most the
+   *     number of tokens minus one otherwise
+   * @throws FormatLimitExceededException If the input goes over a limit
+   */
+  int scanMore(
+      String text,
+      int offset,
+      boolean afterDot,
+      TokenStream tokens,
+      Matchers matchers,
+      boolean toSemicolon,
+      Budget budget) {
+    matchers.reset(budget == null ? text : budget.over(text));
+    int length = text.length();
+    int index = 0;
+    int settled = -1;
+    while (index < length) {
+      index = skipWhitespace(text, index);
+      if (index < length) {
+        matchers.hitEnd = false;
+        int tokenClass = this.nextToken(text, index, afterDot, matchers);
+        tokens.add(tokenClass, offset + index, offset + matchers.end);
+        if (budget != null) {
+          budget.checkTokens(tokens.size());
+        }
+        boolean semicolon = matchers.end - index == 1 && text.charAt(index) == ';';
+        // The ";" itself may have been tried against longer operators
+        if (semicolon && toSemicolon && settled == -1) {
+          return tokens.size();
+        }
+        if (matchers.hitEnd && settled == -1) {
+          settled = tokens.size() - 1;
+        }
+        afterDot = matchers.end - index == 1 && text.charAt(index) == '.';
+        index = matchers.end;
+      }
+    }
+    return settled == -1 ? Math.max(0, tokens.size() - 1) : settled;
   }
 
-  // Decimal, binary, or hex numbers
-  private Token getNumberToken(String input) {
-    return this.getTokenOnFirstMatch(input, TokenTypes.NUMBER, this.NUMBER_PATTERN);
+  /**
+   * Breaks the text of a statement ending with ";" into tokens, if that ";" ends the statement
+   * whatever follows it. It does not when a token before it could read differently with more
+   * text, like a string quoted with q'{ and }' that closes further on, which only a pattern that
+   * read up to the end of the text can tell.
+   *
+   * @param source The SQL string
+   * @param matchers matchers from {@link #matchers()}
+   * @param budget limits of the call, or null
+   * @return tokens ending with a ";" token, or null
+   * @throws FormatLimitExceededException If the input goes over a limit
+   */
+  TokenStream scanStatement(String source, Matchers matchers, Budget budget) {
+    TokenStream tokens = new TokenStream(source);
+    int settled = this.scanMore(source, 0, false, tokens, matchers, false, budget);
+    // The ";" itself may have been tried against longer operators
+    return !tokens.isEmpty()
+            && settled == tokens.size() - 1
+            && tokens.valueEquals(tokens.size() - 1, ";")
+        ? tokens
+        : null;
   }
 
-  // Punctuation and symbols
-  private Token getOperatorToken(String input) {
-    return this.getTokenOnFirstMatch(input, TokenTypes.OPERATOR, this.OPERATOR_PATTERN);
+  /**
+   * Returns matchers for {@link #scan(String, TokenStream, Matchers)} and {@link #scanMore}, to be
+   * reused by a single thread.
+   *
+   * @return matchers
+   */
+  Matchers matchers() {
+    return new Matchers();
   }
 
-  private Token getReservedWordToken(String input, Token previousToken) {
-    // A reserved word cannot be preceded by a "."
-    // this makes it so in "mytable.from", "from" is not considered a reserved word
-    if (previousToken != null && previousToken.value != null && previousToken.value.equals(".")) {
-      return null;
+  private static int skipWhitespace(CharSequence input, int index) {
+    int length = input.length();
+    while (index != length && Character.isWhitespace(input.charAt(index))) {
+      index++;
     }
-    return Util.firstNotnull(
-        () -> this.getToplevelReservedToken(input),
-        () -> this.getNewlineReservedToken(input),
-        () -> this.getTopLevelReservedTokenNoIndent(input),
-        () -> this.getPlainReservedToken(input));
+    return index;
   }
 
-  private Token getToplevelReservedToken(String input) {
-    return this.getTokenOnFirstMatch(
-        input, TokenTypes.RESERVED_TOP_LEVEL, this.RESERVED_TOP_LEVEL_PATTERN);
+  // Finds the token starting at index, returning its class and leaving its end in matchers.end
+  private int nextToken(String input, int index, boolean afterDot, Matchers matchers) {
+    char first = input.charAt(index);
+    int[] candidates =
+        first < this.candidatesByFirstChar.length
+            ? this.candidatesByFirstChar[first]
+            : this.allCandidates;
+
+    for (int tokenClass : candidates) {
+      if (afterDot && tokenClass >= RESERVED_TOP_LEVEL && tokenClass <= RESERVED_PLAIN) {
+        continue;
+      }
+      ReservedWords words = this.reservedWords[tokenClass];
+      if (words != null) {
+        int end = words.match(input, index, matchers.boundary);
+        // A longer word may match with more input
+        Matcher boundary = matchers.boundary;
+        matchers.hitEnd |= boundary.regionStart() == input.length() && boundary.hitEnd();
+        if (end != -1) {
+          matchers.end = end;
+          return tokenClass;
+        }
+        continue;
+      }
+      if (this.stringKinds != null
+          && (tokenClass == STRING || tokenClass == STRING_NAMED_PLACEHOLDER)) {
+        int end = this.scanString(input, index, tokenClass, matchers);
+        if (end != -1) {
+          matchers.end = end;
+          return tokenClass;
+        }
+        continue;
+      }
+      Matcher matcher = matchers.get(tokenClass);
+      // Patterns are anchored with "^", which matches at the start of the region
+      boolean found = matcher.region(index, input.length()).lookingAt();
+      matchers.hitEnd |= matcher.hitEnd();
+      if (found) {
+        matchers.end = matcher.end(1);
+        return tokenClass;
+      }
+    }
+    throw new IllegalStateException("No token matches at index " + index);
   }
 
-  private Token getNewlineReservedToken(String input) {
-    return this.getTokenOnFirstMatch(
-        input, TokenTypes.RESERVED_NEWLINE, this.RESERVED_NEWLINE_PATTERN);
+  // Reads a string, or a named placeholder quoted as a string after one of its prefixes, in a
+  // single pass without backtracking, returning its end or -1
+  private int scanString(String input, int index, int tokenClass, Matchers matchers) {
+    StringScanner strings = matchers.strings;
+    strings.hitEnd = false;
+    int end =
+        tokenClass == STRING
+            ? strings.scan(this.stringKinds, index)
+            : strings.scan(this.namedPlaceholderTypes, this.stringKinds, index);
+    matchers.hitEnd |= strings.hitEnd;
+    return end;
   }
 
-  private Token getTopLevelReservedTokenNoIndent(String input) {
-    return this.getTokenOnFirstMatch(
-        input, TokenTypes.RESERVED_TOP_LEVEL_NO_INDENT, this.RESERVED_TOP_LEVEL_NO_INDENT_PATTERN);
-  }
+  /** Matchers of the patterns on one input at a time, created on first use and then reset. */
+  final class Matchers {
+    private final Matcher[] matchers = new Matcher[Tokenizer.this.patterns.length];
+    private final boolean[] bound = new boolean[Tokenizer.this.patterns.length];
+    private final Matcher boundary =
+        ReservedWords.WORD_BOUNDARY.matcher("").useTransparentBounds(true);
+    private final StringScanner strings = new StringScanner();
+    private CharSequence input;
+    // End of the last token found
+    private int end;
+    // Whether a pattern read up to the end of the input since this was cleared
+    private boolean hitEnd;
+
+    private Matchers() {}
+
+    private void reset(CharSequence input) {
+      this.input = input;
+      this.hitEnd = false;
+      Arrays.fill(this.bound, false);
+      this.boundary.reset(input);
+      this.strings.reset(input);
+    }
 
-  private Token getPlainReservedToken(String input) {
-    return this.getTokenOnFirstMatch(input, TokenTypes.RESERVED, this.RESERVED_PLAIN_PATTERN);
+    private Matcher get(int tokenClass) {
+      Matcher matcher = this.matchers[tokenClass];
+      if (matcher == null) {
+        matcher = Tokenizer.this.patterns[tokenClass].matcher(this.input);
+        this.matchers[tokenClass] = matcher;
+      } else if (!this.bound[tokenClass]) {
+        matcher.reset(this.input);
+      }
+      this.bound[tokenClass] = true;
+      return matcher;
+    }
   }
 
-  private Token getWordToken(String input) {
-    return this.getTokenOnFirstMatch(input, TokenTypes.WORD, this.WORD_PATTERN);
+  static TokenTypes type(int tokenClass) {
+    return TYPES[tokenClass];
   }
 
-  private static String getFirstMatch(String input, Pattern regex) {
-    if (regex == null) {
-      return null;
-    }
-
-    Matcher matcher = regex.matcher(input);
-    if (matcher.find()) {
-      return matcher.group(1);
-    } else {
-      return null;
+  /**
+   * @param tokenClass token class
+   * @param value token value
+   * @return key of a placeholder token, null for other tokens
+   */
+  static String placeholderKey(int tokenClass, String value) {
+    switch (tokenClass) {
+      case IDENT_NAMED_PLACEHOLDER:
+      case INDEXED_PLACEHOLDER:
+        return value.substring(1);
+      case STRING_NAMED_PLACEHOLDER:
+        return getEscapedPlaceholderKey(
+            value.substring(2, value.length() - 1), value.substring(value.length() - 1));
+      default:
+        return null;
     }
   }
 
-  private Token getTokenOnFirstMatch(String input, TokenTypes type, Pattern regex) {
-    String firstMatch = getFirstMatch(input, regex);
+  private static String getEscapedPlaceholderKey(String key, String quoteChar) {
+    return key.replaceAll(RegexUtil.escapeRegExp("\\") + quoteChar, quoteChar);
+  }
 
-    if (firstMatch != null) {
-      return new Token(type, firstMatch);
-    } else {
-      return null;
+  // Token classes the patterns could match at a token starting with each ASCII char, in order of
+  // precedence. A pattern that fails on the char alone without running out of input cannot match
+  // any longer input starting with it either.
+  private int[][] candidatesByFirstChar() {
+    int[][] table = new int[128][];
+    for (char c = 0; c < table.length; c++) {
+      String input = String.valueOf(c);
+      List<Integer> candidates = new ArrayList<>();
+      for (int tokenClass : this.allCandidates) {
+        ReservedWords words = this.reservedWords[tokenClass];
+        if (words != null) {
+          if (words.mayStartWith(c)) {
+            candidates.add(tokenClass);
+          }
+          continue;
+        }
+        Matcher matcher = this.patterns[tokenClass].matcher(input);
+        if (matcher.lookingAt() || matcher.hitEnd()) {
+          candidates.add(tokenClass);
+        }
+      }
+      table[c] = candidates.stream().mapToInt(Integer::intValue).toArray();
     }
+    return table;
   }
 }
@@ -28,6 +28,19 @@ public class Util {
     // return s.replaceAll("[ \t]+$", "");
   }
 
+  /**
+   * Removes trailing spaces and tabs in place.
+   *
+   * @param sb buffer to trim
+   */
+  public static void trimSpacesEnd(StringBuilder sb) {
+    int endIndex = sb.length();
+    while (endIndex > 0 && (sb.charAt(endIndex - 1) == ' ' || sb.charAt(endIndex - 1) == '\t')) {
+      endIndex--;
+    }
+    sb.setLength(endIndex);
+  }
+
   @SafeVarargs
   public static <R> R firstNotnull(Supplier<R>... sups) {
     for (Supplier<R> sup : sups) {
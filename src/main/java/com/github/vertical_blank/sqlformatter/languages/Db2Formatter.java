@@ -558,27 +558,30 @@ public class Db2Formatter extends AbstractFormatter {
           "CROSS JOIN",
           "NATURAL JOIN");
 
+  private static final DialectConfig dialectConfig =
+      DialectConfig.builder()
+          .reservedWords(reservedWords)
+          .reservedTopLevelWords(reservedTopLevelWords)
+          .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
+          .reservedNewlineWords(reservedNewlineWords)
+          .stringTypes(
+              Arrays.asList(
+                  StringLiteral.DOUBLE_QUOTE,
+                  StringLiteral.SINGLE_QUOTE,
+                  StringLiteral.BACK_QUOTE,
+                  StringLiteral.BRACKET))
+          .openParens(Collections.singletonList("("))
+          .closeParens(Collections.singletonList(")"))
+          .indexedPlaceholderTypes(Collections.singletonList("?"))
+          .namedPlaceholderTypes(Collections.singletonList(":"))
+          .lineCommentTypes(Collections.singletonList("--"))
+          .specialWordChars(Arrays.asList("#", "@"))
+          .operators(Arrays.asList("**", "!=", "!>", "!>", "||"))
+          .build();
+
   @Override
   public DialectConfig dialectConfig() {
-    return DialectConfig.builder()
-        .reservedWords(reservedWords)
-        .reservedTopLevelWords(reservedTopLevelWords)
-        .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
-        .reservedNewlineWords(reservedNewlineWords)
-        .stringTypes(
-            Arrays.asList(
-                StringLiteral.DOUBLE_QUOTE,
-                StringLiteral.SINGLE_QUOTE,
-                StringLiteral.BACK_QUOTE,
-                StringLiteral.BRACKET))
-        .openParens(Collections.singletonList("("))
-        .closeParens(Collections.singletonList(")"))
-        .indexedPlaceholderTypes(Collections.singletonList("?"))
-        .namedPlaceholderTypes(Collections.singletonList(":"))
-        .lineCommentTypes(Collections.singletonList("--"))
-        .specialWordChars(Arrays.asList("#", "@"))
-        .operators(Arrays.asList("**", "!=", "!>", "!>", "||"))
-        .build();
+    return dialectConfig;
   }
 
   public Db2Formatter(FormatConfig cfg) {
@@ -318,27 +318,30 @@ public class MySqlFormatter extends AbstractFormatter {
           "NATURAL RIGHT JOIN",
           "NATURAL RIGHT OUTER JOIN");
 
+  private static final DialectConfig dialectConfig =
+      DialectConfig.builder()
+          .reservedWords(reservedWords)
+          .reservedTopLevelWords(reservedTopLevelWords)
+          .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
+          .reservedNewlineWords(reservedNewlineWords)
+          .stringTypes(
+              Arrays.asList(
+                  StringLiteral.DOUBLE_QUOTE,
+                  StringLiteral.SINGLE_QUOTE,
+                  StringLiteral.BACK_QUOTE,
+                  StringLiteral.BRACKET))
+          .openParens(Arrays.asList("(", "CASE"))
+          .closeParens(Arrays.asList(")", "END"))
+          .indexedPlaceholderTypes(Collections.singletonList("?"))
+          .namedPlaceholderTypes(Collections.emptyList())
+          .lineCommentTypes(Arrays.asList("--", "#"))
+          .specialWordChars(Arrays.asList("@"))
+          .operators(Arrays.asList(":=", "<<", ">>", "!=", "<>", "<=>", "&&", "||", "->", "->>"))
+          .build();
+
   @Override
   public DialectConfig dialectConfig() {
-    return DialectConfig.builder()
-        .reservedWords(reservedWords)
-        .reservedTopLevelWords(reservedTopLevelWords)
-        .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
-        .reservedNewlineWords(reservedNewlineWords)
-        .stringTypes(
-            Arrays.asList(
-                StringLiteral.DOUBLE_QUOTE,
-                StringLiteral.SINGLE_QUOTE,
-                StringLiteral.BACK_QUOTE,
-                StringLiteral.BRACKET))
-        .openParens(Arrays.asList("(", "CASE"))
-        .closeParens(Arrays.asList(")", "END"))
-        .indexedPlaceholderTypes(Collections.singletonList("?"))
-        .namedPlaceholderTypes(Collections.emptyList())
-        .lineCommentTypes(Arrays.asList("--", "#"))
-        .specialWordChars(Arrays.asList("@"))
-        .operators(Arrays.asList(":=", "<<", ">>", "!=", "<>", "<=>", "&&", "||", "->", "->>"))
-        .build();
+    return dialectConfig;
   }
 
   public MySqlFormatter(FormatConfig cfg) {
@@ -228,22 +228,25 @@ public class N1qlFormatter extends AbstractFormatter {
           "RIGHT JOIN",
           "RIGHT OUTER JOIN");
 
+  private static final DialectConfig dialectConfig =
+      DialectConfig.builder()
+          .reservedWords(reservedWords)
+          .reservedTopLevelWords(reservedTopLevelWords)
+          .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
+          .reservedNewlineWords(reservedNewlineWords)
+          .stringTypes(
+              Arrays.asList(
+                  StringLiteral.DOUBLE_QUOTE, StringLiteral.SINGLE_QUOTE, StringLiteral.BACK_QUOTE))
+          .openParens(Arrays.asList("(", "[", "{"))
+          .closeParens(Arrays.asList(")", "]", "}"))
+          .namedPlaceholderTypes(Collections.singletonList("$"))
+          .lineCommentTypes(Arrays.asList("#", "--"))
+          .operators(Arrays.asList("==", "!="))
+          .build();
+
   @Override
   public DialectConfig dialectConfig() {
-    return DialectConfig.builder()
-        .reservedWords(reservedWords)
-        .reservedTopLevelWords(reservedTopLevelWords)
-        .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
-        .reservedNewlineWords(reservedNewlineWords)
-        .stringTypes(
-            Arrays.asList(
-                StringLiteral.DOUBLE_QUOTE, StringLiteral.SINGLE_QUOTE, StringLiteral.BACK_QUOTE))
-        .openParens(Arrays.asList("(", "[", "{"))
-        .closeParens(Arrays.asList(")", "]", "}"))
-        .namedPlaceholderTypes(Collections.singletonList("$"))
-        .lineCommentTypes(Arrays.asList("#", "--"))
-        .operators(Arrays.asList("==", "!="))
-        .build();
+    return dialectConfig;
   }
 
   public N1qlFormatter(FormatConfig cfg) {
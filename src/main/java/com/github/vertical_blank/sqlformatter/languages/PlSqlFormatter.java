@@ -2,6 +2,7 @@ package com.github.vertical_blank.sqlformatter.languages;
 
 import com.github.vertical_blank.sqlformatter.core.AbstractFormatter;
 import com.github.vertical_blank.sqlformatter.core.DialectConfig;
+import com.github.vertical_blank.sqlformatter.core.FormatContext;
 import com.github.vertical_blank.sqlformatter.core.FormatConfig;
 import com.github.vertical_blank.sqlformatter.core.Token;
 import com.github.vertical_blank.sqlformatter.core.TokenTypes;
@@ -423,33 +424,36 @@ public class PlSqlFormatter extends AbstractFormatter {
           "CROSS JOIN",
           "NATURAL JOIN");
 
+  private static final DialectConfig dialectConfig =
+      DialectConfig.builder()
+          .reservedWords(reservedWords)
+          .reservedTopLevelWords(reservedTopLevelWords)
+          .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
+          .reservedNewlineWords(reservedNewlineWords)
+          .stringTypes(
+              Arrays.asList(
+                  StringLiteral.DOUBLE_QUOTE,
+                  StringLiteral.N_SINGLE_QUOTE,
+                  StringLiteral.Q_SINGLE_QUOTE,
+                  StringLiteral.SINGLE_QUOTE,
+                  StringLiteral.BACK_QUOTE))
+          .openParens(Arrays.asList("(", "CASE"))
+          .closeParens(Arrays.asList(")", "END"))
+          .indexedPlaceholderTypes(Collections.singletonList("?"))
+          .namedPlaceholderTypes(Collections.singletonList(":"))
+          .lineCommentTypes(Collections.singletonList("--"))
+          .specialWordChars(Arrays.asList("_", "$", "#", ".", "@"))
+          .operators(Arrays.asList("||", "**", "!=", ":="))
+          .build();
+
   @Override
   public DialectConfig dialectConfig() {
-    return DialectConfig.builder()
-        .reservedWords(reservedWords)
-        .reservedTopLevelWords(reservedTopLevelWords)
-        .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
-        .reservedNewlineWords(reservedNewlineWords)
-        .stringTypes(
-            Arrays.asList(
-                StringLiteral.DOUBLE_QUOTE,
-                StringLiteral.N_SINGLE_QUOTE,
-                StringLiteral.Q_SINGLE_QUOTE,
-                StringLiteral.SINGLE_QUOTE,
-                StringLiteral.BACK_QUOTE))
-        .openParens(Arrays.asList("(", "CASE"))
-        .closeParens(Arrays.asList(")", "END"))
-        .indexedPlaceholderTypes(Collections.singletonList("?"))
-        .namedPlaceholderTypes(Collections.singletonList(":"))
-        .lineCommentTypes(Collections.singletonList("--"))
-        .specialWordChars(Arrays.asList("_", "$", "#", ".", "@"))
-        .operators(Arrays.asList("||", "**", "!=", ":="))
-        .build();
+    return dialectConfig;
   }
 
   @Override
-  public Token tokenOverride(Token token) {
-    if (Token.isSet(token) && Token.isBy(super.previousReservedToken)) {
+  public Token tokenOverride(Token token, FormatContext ctx) {
+    if (Token.isSet(token) && Token.isBy(ctx.previousReservedToken())) {
       return new Token(TokenTypes.RESERVED, token.value);
     }
     return token;
@@ -509,30 +509,33 @@ public class PostgreSqlFormatter extends AbstractFormatter {
           "CROSS JOIN",
           "NATURAL JOIN");
 
+  private static final DialectConfig dialectConfig =
+      DialectConfig.builder()
+          .reservedWords(reservedWords)
+          .reservedTopLevelWords(reservedTopLevelWords)
+          .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
+          .reservedNewlineWords(reservedNewlineWords)
+          .stringTypes(
+              Arrays.asList(
+                  StringLiteral.DOUBLE_QUOTE,
+                  StringLiteral.SINGLE_QUOTE,
+                  StringLiteral.U_DOUBLE_QUOTE,
+                  StringLiteral.U_SINGLE_QUOTE,
+                  StringLiteral.DOLLAR))
+          .openParens(Arrays.asList("(", "CASE"))
+          .closeParens(Arrays.asList(")", "END"))
+          .indexedPlaceholderTypes(Collections.singletonList("$"))
+          .namedPlaceholderTypes(Collections.singletonList(":"))
+          .lineCommentTypes(Collections.singletonList("--"))
+          .operators(
+              Arrays.asList(
+                  "!=", "<<", ">>", "||/", "|/", "::", "->>", "->", "~~*", "~~", "!~~*", "!~~",
+                  "~*", "!~*", "!~", "!!", "@@", "@@@"))
+          .build();
+
   @Override
   public DialectConfig dialectConfig() {
-    return DialectConfig.builder()
-        .reservedWords(reservedWords)
-        .reservedTopLevelWords(reservedTopLevelWords)
-        .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
-        .reservedNewlineWords(reservedNewlineWords)
-        .stringTypes(
-            Arrays.asList(
-                StringLiteral.DOUBLE_QUOTE,
-                StringLiteral.SINGLE_QUOTE,
-                StringLiteral.U_DOUBLE_QUOTE,
-                StringLiteral.U_SINGLE_QUOTE,
-                StringLiteral.DOLLAR))
-        .openParens(Arrays.asList("(", "CASE"))
-        .closeParens(Arrays.asList(")", "END"))
-        .indexedPlaceholderTypes(Collections.singletonList("$"))
-        .namedPlaceholderTypes(Collections.singletonList(":"))
-        .lineCommentTypes(Collections.singletonList("--"))
-        .operators(
-            Arrays.asList(
-                "!=", "<<", ">>", "||/", "|/", "::", "->>", "->", "~~*", "~~", "!~~*", "!~~", "~*",
-                "!~*", "!~", "!!", "@@", "@@@"))
-        .build();
+    return dialectConfig;
   }
 
   public PostgreSqlFormatter(FormatConfig cfg) {
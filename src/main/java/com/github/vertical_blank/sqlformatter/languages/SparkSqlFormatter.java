@@ -2,6 +2,7 @@ package com.github.vertical_blank.sqlformatter.languages;
 
 import com.github.vertical_blank.sqlformatter.core.AbstractFormatter;
 import com.github.vertical_blank.sqlformatter.core.DialectConfig;
+import com.github.vertical_blank.sqlformatter.core.FormatContext;
 import com.github.vertical_blank.sqlformatter.core.FormatConfig;
 import com.github.vertical_blank.sqlformatter.core.Token;
 import com.github.vertical_blank.sqlformatter.core.TokenTypes;
@@ -234,33 +235,36 @@ public class SparkSqlFormatter extends AbstractFormatter {
           "NATURAL RIGHT SEMI JOIN",
           "NATURAL SEMI JOIN");
 
+  private static final DialectConfig dialectConfig =
+      DialectConfig.builder()
+          .reservedWords(reservedWords)
+          .reservedTopLevelWords(reservedTopLevelWords)
+          .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
+          .reservedNewlineWords(reservedNewlineWords)
+          .stringTypes(
+              Arrays.asList(
+                  StringLiteral.DOUBLE_QUOTE,
+                  StringLiteral.SINGLE_QUOTE,
+                  StringLiteral.BACK_QUOTE,
+                  StringLiteral.BRACE))
+          .openParens(Arrays.asList("(", "CASE"))
+          .closeParens(Arrays.asList(")", "END"))
+          .indexedPlaceholderTypes(Collections.singletonList("?"))
+          .namedPlaceholderTypes(Collections.singletonList("$"))
+          .lineCommentTypes(Collections.singletonList("--"))
+          .operators(Arrays.asList("!=", "<=>", "&&", "||", "==", "->"))
+          .build();
+
   @Override
   public DialectConfig dialectConfig() {
-    return DialectConfig.builder()
-        .reservedWords(reservedWords)
-        .reservedTopLevelWords(reservedTopLevelWords)
-        .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
-        .reservedNewlineWords(reservedNewlineWords)
-        .stringTypes(
-            Arrays.asList(
-                StringLiteral.DOUBLE_QUOTE,
-                StringLiteral.SINGLE_QUOTE,
-                StringLiteral.BACK_QUOTE,
-                StringLiteral.BRACE))
-        .openParens(Arrays.asList("(", "CASE"))
-        .closeParens(Arrays.asList(")", "END"))
-        .indexedPlaceholderTypes(Collections.singletonList("?"))
-        .namedPlaceholderTypes(Collections.singletonList("$"))
-        .lineCommentTypes(Collections.singletonList("--"))
-        .operators(Arrays.asList("!=", "<=>", "&&", "||", "==", "->"))
-        .build();
+    return dialectConfig;
   }
 
   @Override
-  public Token tokenOverride(Token token) {
+  public Token tokenOverride(Token token, FormatContext ctx) {
     // Fix cases where names are ambiguously keywords or functions
     if (Token.isWindow(token)) {
-      Token aheadToken = this.tokenLookAhead();
+      Token aheadToken = ctx.tokenLookAhead();
       if (aheadToken != null && aheadToken.type == TokenTypes.OPEN_PAREN) {
         // This is a function call, treat it as a reserved word
         return new Token(TokenTypes.RESERVED, token.value);
@@ -269,7 +273,7 @@ public class SparkSqlFormatter extends AbstractFormatter {
 
     // Fix cases where names are ambiguously keywords or properties
     if (Token.isEnd(token)) {
-      Token backToken = this.tokenLookBehind();
+      Token backToken = ctx.tokenLookBehind();
       if (backToken != null
           && backToken.type == TokenTypes.OPERATOR
           && backToken.value.equals(".")) {
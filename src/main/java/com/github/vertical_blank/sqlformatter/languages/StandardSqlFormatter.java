@@ -366,21 +366,24 @@ public class StandardSqlFormatter extends AbstractFormatter {
           "CROSS JOIN",
           "NATURAL JOIN");
 
+  private static final DialectConfig dialectConfig =
+      DialectConfig.builder()
+          .reservedWords(reservedWords)
+          .reservedTopLevelWords(reservedTopLevelWords)
+          .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
+          .reservedNewlineWords(reservedNewlineWords)
+          .stringTypes(Arrays.asList(StringLiteral.DOUBLE_QUOTE, StringLiteral.SINGLE_QUOTE))
+          .openParens(Arrays.asList("(", "CASE"))
+          .closeParens(Arrays.asList(")", "END"))
+          .indexedPlaceholderTypes(Collections.singletonList("?"))
+          .namedPlaceholderTypes(Collections.emptyList())
+          .lineCommentTypes(Arrays.asList("--"))
+          .operators(Arrays.asList("||", "!="))
+          .build();
+
   @Override
   public DialectConfig dialectConfig() {
-    return DialectConfig.builder()
-        .reservedWords(reservedWords)
-        .reservedTopLevelWords(reservedTopLevelWords)
-        .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
-        .reservedNewlineWords(reservedNewlineWords)
-        .stringTypes(Arrays.asList(StringLiteral.DOUBLE_QUOTE, StringLiteral.SINGLE_QUOTE))
-        .openParens(Arrays.asList("(", "CASE"))
-        .closeParens(Arrays.asList(")", "END"))
-        .indexedPlaceholderTypes(Collections.singletonList("?"))
-        .namedPlaceholderTypes(Collections.emptyList())
-        .lineCommentTypes(Arrays.asList("--"))
-        .operators(List.of("||", "!="))
-        .build();
+    return dialectConfig;
   }
 
   public StandardSqlFormatter(FormatConfig cfg) {
@@ -241,31 +241,34 @@ public class TSqlFormatter extends AbstractFormatter {
           "FULL OUTER JOIN",
           "CROSS JOIN");
 
+  private static final DialectConfig dialectConfig =
+      DialectConfig.builder()
+          .reservedWords(reservedWords)
+          .reservedTopLevelWords(reservedTopLevelWords)
+          .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
+          .reservedNewlineWords(reservedNewlineWords)
+          .stringTypes(
+              Arrays.asList(
+                  StringLiteral.DOUBLE_QUOTE,
+                  StringLiteral.N_SINGLE_QUOTE,
+                  StringLiteral.SINGLE_QUOTE,
+                  StringLiteral.BACK_QUOTE,
+                  StringLiteral.BRACKET))
+          .openParens(Arrays.asList("(", "CASE"))
+          .closeParens(Arrays.asList(")", "END"))
+          .indexedPlaceholderTypes(Collections.emptyList())
+          .namedPlaceholderTypes(Arrays.asList("@"))
+          .lineCommentTypes(Collections.singletonList("--"))
+          .specialWordChars(Arrays.asList("#", "@"))
+          .operators(
+              Arrays.asList(
+                  ">=", "<=", "<>", "!=", "!<", "!>", "+=", "-=", "*=", "/=", "%=", "|=", "&=",
+                  "^=", "::"))
+          .build();
+
   @Override
   public DialectConfig dialectConfig() {
-    return DialectConfig.builder()
-        .reservedWords(reservedWords)
-        .reservedTopLevelWords(reservedTopLevelWords)
-        .reservedTopLevelWordsNoIndent(reservedTopLevelWordsNoIndent)
-        .reservedNewlineWords(reservedNewlineWords)
-        .stringTypes(
-            Arrays.asList(
-                StringLiteral.DOUBLE_QUOTE,
-                StringLiteral.N_SINGLE_QUOTE,
-                StringLiteral.SINGLE_QUOTE,
-                StringLiteral.BACK_QUOTE,
-                StringLiteral.BRACKET))
-        .openParens(Arrays.asList("(", "CASE"))
-        .closeParens(Arrays.asList(")", "END"))
-        .indexedPlaceholderTypes(Collections.emptyList())
-        .namedPlaceholderTypes(Arrays.asList("@"))
-        .lineCommentTypes(Collections.singletonList("--"))
-        .specialWordChars(Arrays.asList("#", "@"))
-        .operators(
-            Arrays.asList(
-                ">=", "<=", "<>", "!=", "!<", "!>", "+=", "-=", "*=", "/=", "%=", "|=", "&=", "^=",
-                "::"))
-        .build();
+    return dialectConfig;
   }
 
   public TSqlFormatter(FormatConfig cfg) {
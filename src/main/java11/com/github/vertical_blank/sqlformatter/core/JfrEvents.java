@@ -0,0 +1,71 @@
+package com.github.vertical_blank.sqlformatter.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Compiled for Java 11 on its own and created by FormatEvents, which runs without it
+final class JfrEvents implements FormatEvents.Recorder {
+  // Whether an event type is enabled does not depend on the instance, so one is kept for asking
+  private static final TokenizeEvent TOKENIZE = new TokenizeEvent();
+  private static final FormatEvent FORMAT = new FormatEvent();
+
+  JfrEvents() {}
+
+  @Override
+  public Object beginTokenize() {
+    if (!TOKENIZE.isEnabled()) {
+      return null;
+    }
+    TokenizeEvent event = new TokenizeEvent();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public Object beginFormat() {
+    if (!FORMAT.isEnabled()) {
+      return null;
+    }
+    FormatEvent event = new FormatEvent();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public void end(Object started, String dialect, int inputLength, int tokenCount) {
+    QueryEvent event = (QueryEvent) started;
+    event.end();
+    if (event.shouldCommit()) {
+      event.dialect = dialect;
+      event.inputLength = inputLength;
+      event.tokenCount = tokenCount;
+      event.commit();
+    }
+  }
+
+  @Category("SQL Formatter")
+  abstract static class QueryEvent extends Event {
+    @Label("Dialect")
+    String dialect;
+
+    @Label("Input Length")
+    @Description("Length of the query in chars")
+    int inputLength;
+
+    @Label("Token Count")
+    int tokenCount;
+  }
+
+  @Name("com.github.vertical_blank.sqlformatter.Tokenize")
+  @Label("Tokenize SQL")
+  @Description("Breaking a query into tokens")
+  static final class TokenizeEvent extends QueryEvent {}
+
+  @Name("com.github.vertical_blank.sqlformatter.Format")
+  @Label("Format SQL")
+  @Description("Formatting the tokens of a query")
+  static final class FormatEvent extends QueryEvent {}
+}
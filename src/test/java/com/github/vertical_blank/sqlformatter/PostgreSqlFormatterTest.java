@@ -3,6 +3,7 @@ package com.github.vertical_blank.sqlformatter;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import com.github.vertical_blank.sqlformatter.languages.Dialect;
+import java.util.Collections;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 
@@ -38,6 +39,14 @@ public class PostgreSqlFormatterTest {
     assertEquals(expected, result);
   }
 
+  @Test
+  public void testSupportsLongStrings() {
+    String escapes = String.join("", Collections.nCopies(1 << 19, "\\\\"));
+    String result = formatter.format("SELECT '" + escapes + "', $a$ x FROM table");
+    String expected = "SELECT\n  '" + escapes + "',\n  $a$ x FROM table";
+    assertEquals(expected, result);
+  }
+
   @Test
   public void testSupportsBetween() {
     String result = formatter.format("SELECT * FROM table WHERE a BETWEEN 1 AND 10");
@@ -2,10 +2,44 @@ package com.github.vertical_blank.sqlformatter;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.github.vertical_blank.sqlformatter.core.DialectConfig;
+import com.github.vertical_blank.sqlformatter.core.FormatConfig;
+import com.github.vertical_blank.sqlformatter.core.FormatLimitExceededException;
+import com.github.vertical_blank.sqlformatter.core.FormatLimits;
+import com.github.vertical_blank.sqlformatter.core.FormatStatistics;
+import com.github.vertical_blank.sqlformatter.core.FormattedDocument;
+import com.github.vertical_blank.sqlformatter.core.Params;
+import com.github.vertical_blank.sqlformatter.core.Token;
+import com.github.vertical_blank.sqlformatter.core.TokenTypes;
+import com.github.vertical_blank.sqlformatter.core.TokenizedQuery;
+import com.github.vertical_blank.sqlformatter.core.Tokenizer;
 import com.github.vertical_blank.sqlformatter.languages.Dialect;
+import com.github.vertical_blank.sqlformatter.languages.StandardSqlFormatter;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
 
 public class SqlFormatterTest {
@@ -51,6 +85,36 @@ public class SqlFormatterTest {
             + "    table");
   }
 
+  @Test
+  public void withDeepIndent() {
+    // Nests past the initial capacity of the indentation levels and their cached strings
+    int depth = 20;
+    StringBuilder query = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < depth; i++) {
+      query.append("select a").append(i).append(" from (");
+      String indent = String.join("", Collections.nCopies(2 * i, "\t"));
+      expected.append(indent).append("select\n");
+      expected.append(indent).append("\ta").append(i).append("\n");
+      expected.append(indent).append("from\n");
+      expected.append(indent).append("\t(\n");
+    }
+    query.append("select 1");
+    String indent = String.join("", Collections.nCopies(2 * depth, "\t"));
+    expected.append(indent).append("select\n").append(indent).append("\t1");
+    for (int i = depth - 1; i >= 0; i--) {
+      query.append(") t").append(i);
+      indent = String.join("", Collections.nCopies(2 * i, "\t"));
+      expected.append("\n").append(indent).append("\t) t").append(i);
+    }
+
+    // The second statement reuses the indent strings built for the first one
+    String statement = query + ";";
+    assertEquals(
+        expected + ";\n" + expected + ";",
+        SqlFormatter.format(statement + statement, "\t"));
+  }
+
   @Test
   public void withNamedParams() {
     Map<String, String> namedParams = new HashMap<>();
@@ -76,6 +140,60 @@ public class SqlFormatterTest {
     assertEquals(format, "SELECT\n" + "  *\n" + "FROM\n" + "  tbl\n" + "WHERE\n" + "  foo = 'bar'");
   }
 
+  @Test
+  @SuppressWarnings("deprecation")
+  public void withLegacyParams() {
+    // Written against the methods that took params off in order
+    Deque<Object> values = new ArrayDeque<>(Arrays.asList("'bar'", 1));
+    Params legacy =
+        new Params() {
+          @Override
+          public boolean isEmpty() {
+            return false;
+          }
+
+          @Override
+          public Object get() {
+            return values.poll();
+          }
+
+          @Override
+          public Object getByName(String key) {
+            return "'" + key + "'";
+          }
+        };
+    String format =
+        SqlFormatter.of(Dialect.PlSql)
+            .format(
+                "SELECT * FROM tbl WHERE foo = ? AND bar = :baz AND id = ?",
+                FormatConfig.builder().params(legacy).build());
+    assertEquals(
+        "SELECT\n  *\nFROM\n  tbl\nWHERE\n  foo = 'bar'\n  AND bar = 'baz'\n  AND id = 1",
+        format);
+
+    Params overridden =
+        new Params() {
+          @Override
+          public boolean isEmpty() {
+            return false;
+          }
+
+          @Override
+          public Object get(Token token) {
+            return "<" + token.value + ">";
+          }
+
+          @Override
+          public Object getByName(String key) {
+            throw new AssertionError(key);
+          }
+        };
+    assertEquals(
+        "SELECT\n  <:baz>",
+        SqlFormatter.of(Dialect.PlSql)
+            .format("SELECT :baz", FormatConfig.builder().params(overridden).build()));
+  }
+
   @Test
   public void withLambdasParams() {
     String format =
@@ -86,9 +204,498 @@ public class SqlFormatterTest {
         "SELECT\n" + "  aggregate(array(1, 2, 3), 0, (acc, x) -> acc + x, acc -> acc * 10);");
   }
 
+  @Test
+  public void inlineBlocks() {
+    // Nested deeper than the initial stack of open parentheses; 50 characters is the limit
+    String open = String.join("", Collections.nCopies(20, "("));
+    String close = String.join("", Collections.nCopies(20, ")"));
+    assertEquals(
+        "select\n  f(" + open + "12345678" + close + ")",
+        SqlFormatter.format("select f(" + open + "12345678" + close + ")"));
+    assertEquals(
+        "select\n  f(\n    " + open + "123456789" + close + "\n  )",
+        SqlFormatter.format("select f(" + open + "123456789" + close + ")"));
+
+    // A comment breaks only the blocks around it, and stray close parentheses are skipped
+    assertEquals(
+        "select\n  1\n) + f(\n  g(1),\n  2\n  /* c */\n) + h(3)",
+        SqlFormatter.format("select 1) + f(g(1), 2 /* c */) + h(3)"));
+    assertEquals(
+        "select\n  f(abcdefgh),\n  f(\n    abcdefghi\n  )",
+        SqlFormatter.format(
+            "select f(abcdefgh), f(abcdefghi)",
+            FormatConfig.builder().maxColumnLength(10).build()));
+  }
+
   @Test
   public void withNotEquals() {
     final String format = SqlFormatter.format("SELECT * FROM TEST WHERE ABC != '4'");
     assertEquals(format, "SELECT\n" + "  *\n" + "FROM\n" + "  TEST\n" + "WHERE\n" + "  ABC != '4'");
   }
+
+  @Test
+  public void equalDialectConfigsShareTokenizer() {
+    DialectConfig base = new StandardSqlFormatter(FormatConfig.builder().build()).dialectConfig();
+    DialectConfig config1 = base.plusOperators("=>");
+    DialectConfig config2 = base.plusOperators("=>");
+
+    assertEquals(config1, config2);
+    assertEquals(config1.hashCode(), config2.hashCode());
+    assertNotEquals(base, config1);
+    assertSame(Tokenizer.of(config1), Tokenizer.of(config2));
+  }
+
+  @Test
+  public void tokenizerCacheIsBounded() {
+    DialectConfig base = new StandardSqlFormatter(FormatConfig.builder().build()).dialectConfig();
+    DialectConfig first = base.plusOperators("=>");
+    Tokenizer tokenizer = Tokenizer.of(first);
+    for (int i = 0; i < 100; i++) {
+      Tokenizer.of(base.plusOperators("=>" + i));
+    }
+
+    assertNotSame(tokenizer, Tokenizer.of(first));
+    assertSame(Tokenizer.of(first), Tokenizer.of(first));
+  }
+
+  @Test
+  public void formatterIsReusable() {
+    assertSame(SqlFormatter.of(Dialect.N1ql), SqlFormatter.of("n1ql"));
+
+    FormatConfig cfg = FormatConfig.builder().params(Arrays.asList("1", "2")).build();
+    SqlFormatter.Formatter formatter = SqlFormatter.of(Dialect.MySql);
+    String first = formatter.format("SELECT ?, ?, ?", cfg);
+    String second = formatter.format("SELECT ?, ?, ?", cfg);
+    assertEquals(first, "SELECT\n" + "  1,\n" + "  2,\n" + "  ?");
+    assertEquals(first, second);
+  }
+
+  @Test
+  public void formatStream() throws IOException {
+    String script =
+        "SELECT a FROM t WHERE b = 'x;y';\n"
+            + "-- comment;\n"
+            + "UPDATE t SET a = 1 /* ; */ WHERE b BETWEEN 1 AND 2;\n"
+            + "SELECT (1, 2) FROM u";
+    StringWriter out = new StringWriter();
+    SqlFormatter.of(Dialect.PostgreSql).format(new StringReader(script), out);
+    assertEquals(SqlFormatter.of(Dialect.PostgreSql).format(script), out.toString());
+  }
+
+  @Test
+  public void formatStreamInSmallReads() throws IOException {
+    StringBuilder script = new StringBuilder("CREATE FUNCTION f() AS $$ ");
+    for (int i = 0; i < 100; i++) {
+      script.append("UPDATE t SET a = ").append(i).append(";\n");
+    }
+    script.append("$$ LANGUAGE sql;\nSELECT a FROM t GROUP BY a ORDER BY b;\nSELECT 1");
+    // Returns a single char per read, so words are cut between reads
+    Reader in =
+        new FilterReader(new StringReader(script.toString())) {
+          @Override
+          public int read(char[] cbuf, int off, int len) throws IOException {
+            return super.read(cbuf, off, Math.min(len, 1));
+          }
+        };
+    StringWriter out = new StringWriter();
+    SqlFormatter.of(Dialect.PostgreSql).format(in, out);
+    assertEquals(SqlFormatter.of(Dialect.PostgreSql).format(script.toString()), out.toString());
+  }
+
+  @Test
+  public void formatToSink() throws IOException {
+    SqlFormatter.Formatter formatter = SqlFormatter.of(Dialect.MySql);
+    String query = "SELECT 'caf\u00e9', \"\ud83d\ude00\" FROM t -- \u2028\n WHERE a = 1";
+    String expected = formatter.format(query);
+
+    StringWriter writer = new StringWriter();
+    formatter.format(new StringBuilder(query), writer);
+    assertEquals(expected, writer.toString());
+
+    StringBuilder builder = new StringBuilder("> ");
+    formatter.format(query, builder);
+    assertEquals("> " + expected, builder.toString());
+
+    CharBuffer chars = CharBuffer.allocate(expected.length());
+    formatter.format(query, chars);
+    chars.flip();
+    assertEquals(expected, chars.toString());
+    CharBuffer full = CharBuffer.allocate(3);
+    assertThrows(BufferOverflowException.class, () -> formatter.format(query, full));
+
+    byte[] utf8 = expected.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer bytes = ByteBuffer.allocateDirect(utf8.length + 1).put((byte) '>');
+    formatter.format(query, bytes);
+    assertEquals(utf8.length + 1, bytes.position());
+    ByteBuffer small = ByteBuffer.allocate(utf8.length - 1);
+    assertThrows(BufferOverflowException.class, () -> formatter.format(query, small));
+    assertEquals(0, small.position());
+    bytes.position(1);
+    assertEquals(expected, StandardCharsets.UTF_8.decode(bytes).toString());
+  }
+
+  @Test
+  public void formatParallel() {
+    StringBuilder script = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      script.append("SELECT a, ? FROM t").append(i).append(" WHERE b = 'x;y' LIMIT 1, 2;\n");
+    }
+    FormatConfig cfg = FormatConfig.builder().params(Arrays.asList("1", "2", "3")).build();
+    SqlFormatter.Formatter formatter = SqlFormatter.of(Dialect.MySql);
+    assertEquals(
+        formatter.format(script.toString(), cfg),
+        formatter.formatParallel(script.toString(), cfg, new ForkJoinPool(4)));
+  }
+
+  @Test
+  public void tokenizedQuery() {
+    SqlFormatter.Formatter formatter = SqlFormatter.of(Dialect.N1ql);
+    String query = "SELECT a, b FROM t WHERE c = $1 AND d IN (1, 2)";
+    TokenizedQuery tokens = formatter.tokenize(query);
+    assertEquals(query, tokens.query());
+    assertEquals(18, tokens.size());
+    assertEquals("$1", tokens.get(9).value);
+
+    for (FormatConfig cfg :
+        Arrays.asList(
+            FormatConfig.builder().build(),
+            FormatConfig.builder().uppercase(true).indent("    ").build(),
+            FormatConfig.builder().params(Arrays.asList("'x'")).build(),
+            FormatConfig.builder().minify(true).build())) {
+      assertEquals(formatter.format(query, cfg), formatter.format(tokens, cfg));
+    }
+    assertThrows(
+        IllegalArgumentException.class, () -> SqlFormatter.of(Dialect.MySql).format(tokens));
+  }
+
+  @Test
+  public void tokenizedQueryTokens() {
+    // Tokens are read back from their offsets in the query
+    String query = " \nSELECT @a,\n  @\"b\\\"c\" /* x */ FROM t -- e\n;";
+    TokenizedQuery tokens = SqlFormatter.of(Dialect.TSql).tokenize(query);
+    assertEquals(9, tokens.size());
+    assertToken(TokenTypes.RESERVED_TOP_LEVEL, "SELECT", " \n", null, tokens.get(0));
+    assertToken(TokenTypes.PLACEHOLDER, "@a", " ", "a", tokens.get(1));
+    assertToken(TokenTypes.OPERATOR, ",", "", null, tokens.get(2));
+    assertToken(TokenTypes.PLACEHOLDER, "@\"b\\\"c\"", "\n  ", "b\"c", tokens.get(3));
+    assertToken(TokenTypes.BLOCK_COMMENT, "/* x */", " ", null, tokens.get(4));
+    assertToken(TokenTypes.LINE_COMMENT, "-- e", " ", null, tokens.get(7));
+    assertToken(TokenTypes.OPERATOR, ";", "\n", null, tokens.get(8));
+    assertThrows(IndexOutOfBoundsException.class, () -> tokens.get(9));
+
+    // More tokens than the stream first makes room for
+    String list = "SELECT " + String.join(",", Collections.nCopies(1000, "a")) + " b";
+    TokenizedQuery many = SqlFormatter.standard().tokenize(list);
+    assertEquals(2001, many.size());
+    assertToken(TokenTypes.WORD, "a", "", null, many.get(1997));
+    assertToken(TokenTypes.WORD, "b", " ", null, many.get(2000));
+    assertEquals(SqlFormatter.format(list), SqlFormatter.standard().format(many));
+  }
+
+  private static void assertToken(
+      TokenTypes type, String value, String whitespaceBefore, String key, Token token) {
+    assertEquals(type, token.type);
+    assertEquals(value, token.value);
+    assertEquals(whitespaceBefore, token.whitespaceBefore);
+    assertEquals(key, token.key);
+  }
+
+  @Test
+  public void formatDocument() throws IOException {
+    SqlFormatter.Formatter formatter = SqlFormatter.of(Dialect.PlSql);
+    String script =
+        "SELECT 1 FROM a;\nUPDATE b SET c = 2;\nSELECT q'{x; y' z; w}' FROM d; SELECT 3;";
+    FormattedDocument document = formatter.formatDocument(script);
+    assertEquals(formatter.format(script), document.formatted());
+
+    // Opens a string running into the following statements, then closes it again
+    document = document.edit(script.indexOf("c ="), 0, "'");
+    assertEquals(formatter.format(document.text()), document.formatted());
+    document = document.edit(script.indexOf("c ="), 1, "");
+    assertEquals(formatter.format(script), document.formatted());
+
+    document = document.edit(script.indexOf("FROM a;") + 6, 1, " WHERE e = 4");
+    assertEquals(formatter.format(document.text()), document.formatted());
+
+    StringWriter out = new StringWriter();
+    formatter.format(new StringReader(script), out);
+    assertEquals(formatter.format(script), out.toString());
+  }
+
+  @Test
+  public void editDocumentReadPastStatement() {
+    SqlFormatter.Formatter formatter = SqlFormatter.standard();
+    // The string fails to match at the escaped "\r", after the ";" it swallows once that is gone
+    String script = "select \"abc ;\nselect 1 \\\r\n";
+    FormattedDocument document = formatter.formatDocument(script);
+    assertEquals(formatter.format(script), document.formatted());
+
+    FormattedDocument edited = document.edit(script.indexOf('\\'), 1, " x\n");
+    assertEquals("select\n  \"abc ;\nselect 1  x", edited.formatted());
+    assertEquals(formatter.formatDocument(edited.text()).formatted(), edited.formatted());
+    assertEquals(formatter.format(edited.text()), edited.formatted());
+  }
+
+  @Test
+  public void formatAll() {
+    List<String> queries = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      queries.add("SELECT a, (b + " + i + ") FROM t" + i + " WHERE c = ? AND d IN (SELECT e)");
+    }
+    queries.add("");
+    queries.add("INSERT INTO t VALUES (1, 2); -- done");
+    FormatConfig cfg = FormatConfig.builder().params(Arrays.asList("'x'")).build();
+    SqlFormatter.Formatter formatter = SqlFormatter.of(Dialect.MySql);
+    List<String> expected =
+        queries.stream().map(query -> formatter.format(query, cfg)).collect(Collectors.toList());
+
+    assertEquals(expected, formatter.formatAll(queries, cfg));
+    assertEquals(expected, formatter.formatAll(queries, cfg, new ForkJoinPool(4)));
+    assertEquals(
+        expected, formatter.formatAll(queries.stream(), cfg).collect(Collectors.toList()));
+    assertEquals(
+        expected,
+        formatter.formatAll(queries.parallelStream(), cfg).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void formatCache() {
+    FormatCache cache = FormatCache.builder().maxEntries(1).build();
+    SqlFormatter.Formatter formatter = SqlFormatter.of(Dialect.MySql).cached(cache);
+
+    String formatted = formatter.format("SELECT 1");
+    assertEquals(SqlFormatter.of(Dialect.MySql).format("SELECT 1"), formatted);
+    assertSame(formatted, formatter.format("SELECT 1"));
+    formatter.format("SELECT 1", FormatConfig.builder().linesBetweenQueries(1).build());
+    formatter.format("SELECT ?", Arrays.asList("1"));
+    assertEquals(2, cache.hitCount());
+    assertEquals(1, cache.missCount());
+
+    formatter.format("SELECT 2");
+    assertEquals(2, cache.missCount());
+    assertEquals(1, cache.evictionCount());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void limits() {
+    String nested = "SELECT " + String.join("", Collections.nCopies(1000, "(")) + "1";
+    FormatLimitExceededException e =
+        assertThrows(
+            FormatLimitExceededException.class,
+            () -> SqlFormatter.format(nested, limits(FormatLimits.builder().maxDepth(100))));
+    assertEquals(FormatLimitExceededException.Limit.DEPTH, e.limit());
+    FormatConfig unchanged = limits(FormatLimits.builder().maxTokens(10).returnInput(true));
+    assertSame(nested, SqlFormatter.format(nested, unchanged));
+    assertEquals(
+        FormatLimitExceededException.Limit.LENGTH,
+        assertThrows(
+                FormatLimitExceededException.class,
+                () -> SqlFormatter.format(nested, limits(FormatLimits.builder().maxLength(10))))
+            .limit());
+
+    String script = String.join("", Collections.nCopies(10_000, "SELECT a FROM b;"));
+    assertEquals(
+        FormatLimitExceededException.Limit.TIME,
+        assertThrows(
+                FormatLimitExceededException.class,
+                () ->
+                    SqlFormatter.format(
+                        script, limits(FormatLimits.builder().timeout(Duration.ZERO))))
+            .limit());
+    assertEquals(
+        SqlFormatter.format(nested),
+        SqlFormatter.format(nested, limits(FormatLimits.builder().maxDepth(1001))));
+  }
+
+  @Test
+  public void limitsWhenStreaming() throws IOException {
+    SqlFormatter.Formatter formatter = SqlFormatter.of(Dialect.MySql);
+    String script = "SELECT 1;\nSELECT " + String.join("", Collections.nCopies(1000, "(")) + "1";
+    for (FormatLimits.FormatLimitsBuilder limits :
+        Arrays.asList(
+            FormatLimits.builder().maxDepth(100),
+            FormatLimits.builder().maxTokens(500),
+            FormatLimits.builder().maxLength(500))) {
+      assertThrows(
+          FormatLimitExceededException.class,
+          () -> formatter.format(new StringReader(script), new StringWriter(), limits(limits)));
+    }
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            formatter.format(
+                new StringReader(script),
+                new StringWriter(),
+                limits(FormatLimits.builder().maxDepth(100).returnInput(true))));
+
+    StringWriter out = new StringWriter();
+    formatter.format(
+        new StringReader(script), out, limits(FormatLimits.builder().maxDepth(1001)));
+    assertEquals(formatter.format(script), out.toString());
+  }
+
+  @Test
+  public void limitsInParallel() {
+    StringBuilder script = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      script.append("SELECT a FROM t").append(i).append(" WHERE b = (c + (d));\n");
+    }
+    String nested = String.join("", Collections.nCopies(100, "("));
+    script.insert(script.length() / 2, "SELECT " + nested + "1" + nested.replace('(', ')') + ";\n");
+    SqlFormatter.Formatter formatter = SqlFormatter.of(Dialect.MySql);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    String query = script.toString();
+    assertEquals(
+        FormatLimitExceededException.Limit.DEPTH,
+        assertThrows(
+                FormatLimitExceededException.class,
+                () ->
+                    formatter.formatParallel(
+                        query, limits(FormatLimits.builder().maxDepth(10)), pool))
+            .limit());
+    assertEquals(
+        FormatLimitExceededException.Limit.TOKENS,
+        assertThrows(
+                FormatLimitExceededException.class,
+                () ->
+                    formatter.formatParallel(
+                        query, limits(FormatLimits.builder().maxTokens(20_000)), pool))
+            .limit());
+    FormatConfig unchanged = limits(FormatLimits.builder().maxDepth(10).returnInput(true));
+    assertSame(query, formatter.formatParallel(query, unchanged, pool));
+    assertEquals(
+        formatter.format(query),
+        formatter.formatParallel(query, limits(FormatLimits.builder().maxDepth(100)), pool));
+  }
+
+  @Test
+  public void limitsOfDocuments() {
+    SqlFormatter.Formatter formatter = SqlFormatter.of(Dialect.MySql);
+    String script = "SELECT a FROM b;\nSELECT (c) FROM d;\n";
+    FormatConfig cfg = limits(FormatLimits.builder().maxDepth(2).returnInput(true));
+    FormattedDocument document = formatter.formatDocument(script, cfg);
+    assertEquals(formatter.format(script), document.formatted());
+
+    // Goes over the limit, and comes back under it
+    document = document.edit(script.indexOf("(c)"), 0, "((");
+    assertEquals(document.text(), document.formatted());
+    document = document.edit(script.indexOf("(c)"), 2, "");
+    assertEquals(formatter.format(script), document.formatted());
+
+    assertEquals(
+        FormatLimitExceededException.Limit.TOKENS,
+        assertThrows(
+                FormatLimitExceededException.class,
+                () -> formatter.formatDocument(script, limits(FormatLimits.builder().maxTokens(5))))
+            .limit());
+    FormattedDocument limited =
+        formatter.formatDocument(script, limits(FormatLimits.builder().maxTokens(15)));
+    assertThrows(
+        FormatLimitExceededException.class, () -> limited.edit(0, 0, "SELECT x FROM y;"));
+  }
+
+  private static FormatConfig limits(FormatLimits.FormatLimitsBuilder limits) {
+    return FormatConfig.builder().limits(limits.build()).build();
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void deprecatedTokenOverride() {
+    // Written against the API before tokenOverride took the context
+    StandardSqlFormatter formatter =
+        new StandardSqlFormatter(FormatConfig.builder().build()) {
+          @Override
+          protected Token tokenOverride(Token token) {
+            if (token.type == TokenTypes.WORD
+                && tokenLookAhead() == null
+                && tokenLookBehind().value.equals("FROM")
+                && previousReservedToken.value.equals("FROM")) {
+              return new Token(TokenTypes.WORD, token.value.toUpperCase());
+            }
+            return token;
+          }
+        };
+
+    assertEquals("SELECT\n  a\nFROM\n  T", formatter.format("SELECT a FROM t"));
+    assertEquals("SELECT\n  a\nFROM\n  t\nWHERE\n  b", formatter.format("SELECT a FROM t WHERE b"));
+  }
+
+  @Test
+  public void metrics() {
+    FormatStatistics statistics = new FormatStatistics();
+    SqlFormatter.Formatter formatter =
+        SqlFormatter.of(Dialect.MySql)
+            .cached(FormatCache.builder().build())
+            .withMetrics(statistics);
+    String query = "SELECT count(*) FROM t WHERE a = 'x'";
+
+    String formatted = formatter.format(query);
+    formatter.format(query);
+
+    assertEquals(2, statistics.calls());
+    assertEquals(1, statistics.cacheHits());
+    assertEquals(2 * query.length(), statistics.inputChars());
+    assertEquals(2 * formatted.length(), statistics.outputChars());
+    assertEquals(1, statistics.inlineBlocks());
+    assertEquals(11, statistics.tokens());
+    assertEquals(3, statistics.tokens(TokenTypes.RESERVED_TOP_LEVEL));
+    assertEquals(1, statistics.tokens(TokenTypes.STRING));
+    assertEquals(1, Arrays.stream(statistics.formatHistogram()).sum());
+  }
+
+  @Test
+  public void flightRecorderEvents() throws IOException {
+    Path file = Files.createTempFile("sql-formatter", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("com.github.vertical_blank.sqlformatter.Tokenize").withoutThreshold();
+      recording.enable("com.github.vertical_blank.sqlformatter.Format").withoutThreshold();
+      recording.start();
+      SqlFormatter.of(Dialect.PostgreSql).format("SELECT a FROM t");
+      recording.stop();
+      recording.dump(file);
+
+      List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+      assertEquals(2, events.size());
+      for (RecordedEvent event : events) {
+        assertEquals("PostgreSqlFormatter", event.getString("dialect"));
+        assertEquals(15, event.getInt("inputLength"));
+        assertEquals(4, event.getInt("tokenCount"));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void minify() throws IOException {
+    String query =
+        "SELECT /*+ INDEX(t idx) */ a, count(*) -- total\n"
+            + "FROM t\n"
+            + "WHERE b = 'x  y' AND c IN (1, 2);";
+    String minified = SqlFormatter.format(query, FormatConfig.builder().minify(true).build());
+    assertEquals(
+        "SELECT/*+ INDEX(t idx) */a,count(*)-- total\nFROM t WHERE b='x  y'AND c IN (1,2);",
+        minified);
+    assertEquals(SqlFormatter.format(query), SqlFormatter.format(minified));
+
+    assertEquals(
+        "SELECT/*+ INDEX(t idx) */a,count(*)FROM t WHERE b='x  y'AND c IN (1,2);",
+        SqlFormatter.format(
+            query, FormatConfig.builder().minify(true).stripComments(true).build()));
+
+    // Strings failing to match at an escaped line break read further than the tokens they start
+    for (String tricky :
+        Arrays.asList(
+            "select 'it\\\n, x from t",
+            "select \"a\\\n b\"",
+            "select 'it\\\r\n'x', a -- c;\nfrom t; select 1")) {
+      FormatConfig cfg = FormatConfig.builder().minify(true).build();
+      minified = SqlFormatter.format(tricky, cfg);
+      assertEquals(SqlFormatter.format(tricky), SqlFormatter.format(minified));
+      StringWriter out = new StringWriter();
+      SqlFormatter.standard().format(new StringReader(tricky), out, cfg);
+      assertEquals(minified, out.toString());
+    }
+  }
 }